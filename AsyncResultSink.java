@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Hands the records of finished games to a dedicated writer thread, so the games never wait
+ * on formatting or I/O.  Any number of threads may write; the records are written in the order
+ * they were queued.  The queue is bounded, so a writer that falls behind slows the games down
+ * instead of filling the heap.  The writer flushes whenever the queue runs empty.
+ * An error of the writer thread is rethrown by the next write, flush or close.
+ */
+public class AsyncResultSink implements ResultSink {
+
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	//Marks the end of the records
+	private static final GameRecord END = new GameRecord(0, "", "", 0, HangmanGame.Status.KEEP_GUESSING,
+			new ArrayList<String>(), 0);
+
+	private final ResultSink sink;
+	private final BlockingQueue<GameRecord> queue;
+	private final Thread writer;
+	private volatile IOException failure;
+	private boolean closed;
+
+	/*
+	 * @param sink written by the writer thread, closed with this sink
+	 * @param maximum number of queued records
+	 */
+	public AsyncResultSink(ResultSink sink, int capacity)
+	{
+		this.sink = sink;
+		this.queue = new ArrayBlockingQueue<GameRecord>(capacity);
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				drain();
+			}
+		}, "result-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	@Override
+	public void write(GameRecord record) throws IOException
+	{
+		try
+		{
+			//Check for a failed writer while waiting for room
+			do
+			{
+				checkFailure();
+			} while (!queue.offer(record, 100, TimeUnit.MILLISECONDS));
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while queueing a game record", e);
+		}
+	}
+
+	/*
+	 * Wait until everything queued so far is written
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+		try
+		{
+			while (!queue.isEmpty() && writer.isAlive())
+			{
+				Thread.sleep(1);
+			}
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while flushing game records", e);
+		}
+		checkFailure();
+	}
+
+	/*
+	 * Write the queued records, stop the writer thread and close the sink
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+		try
+		{
+			if (writer.isAlive())
+			{
+				queue.put(END);
+			}
+			writer.join();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while closing game records", e);
+		}
+		checkFailure();
+	}
+
+	private void drain()
+	{
+		List<GameRecord> batch = new ArrayList<GameRecord>();
+		try
+		{
+			try
+			{
+				while (true)
+				{
+					batch.add(queue.take());
+					queue.drainTo(batch);
+					for (GameRecord record : batch)
+					{
+						if (record == END)
+						{
+							return;
+						}
+						sink.write(record);
+					}
+					batch.clear();
+					if (queue.isEmpty())
+					{
+						sink.flush();
+					}
+				}
+			} finally
+			{
+				sink.close();
+			}
+		} catch (IOException e)
+		{
+			failure = e;
+			//Keep taking records so the games are not blocked forever
+			queue.clear();
+		} catch (InterruptedException e)
+		{
+			failure = new IOException("Result writer interrupted", e);
+		}
+	}
+
+	private void checkFailure() throws IOException
+	{
+		IOException e = failure;
+		if (e != null)
+		{
+			throw new IOException("Failed to write game records", e);
+		}
+	}
+}
@@ -0,0 +1,228 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/*
+ * A compiled dictionary file that is memory-mapped instead of parsed.
+ * The words are grouped by length and every group is stored as fixed-width records of one
+ * byte per letter, so a word is found by its index alone.  The file starts with a header:
+ *   int magic "HMWD", int version, int number of lengths,
+ *   then for every length: int word length, int number of words, int offset of the records
+ * Mapping the file costs one system call and no parsing, and the records stay in the page
+ * cache, shared by every process that maps the same file.  Indexing a length still copies
+ * its letter codes into a heap array that the scoring loop reads, one byte per letter or
+ * about 1.6 MB for all of words.txt, next to the posting bitsets that are on the heap anyway.
+ */
+public class BinaryDictionary {
+
+	private static final int MAGIC = 0x484D5744; //"HMWD"
+	private static final int VERSION = 1;
+
+	//Bytes of the fixed part of the header and of each length entry
+	private static final int HEADER_SIZE = 12;
+	private static final int ENTRY_SIZE = 12;
+
+	private final Map<Integer, MappedWordStore> storesByLength;
+	private final int size;
+
+	private BinaryDictionary(Map<Integer, MappedWordStore> storesByLength)
+	{
+		this.storesByLength = storesByLength;
+		int total = 0;
+		for (MappedWordStore store : storesByLength.values())
+		{
+			total += store.size();
+		}
+		this.size = total;
+	}
+
+	/*
+	 * @return the word lengths of the dictionary in ascending order
+	 */
+	public SortedSet<Integer> getWordLengths()
+	{
+		return new TreeSet<Integer>(storesByLength.keySet());
+	}
+
+	/*
+	 * @param length of the words
+	 * @return the words of the length, null if there are none
+	 */
+	public WordStore getStore(int wordLength)
+	{
+		return storesByLength.get(wordLength);
+	}
+
+	/*
+	 * @return total number of words
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/*
+	 * @return a read-only view of all the words, ordered by length and then by their order in
+	 * the source file.  The words are created on access.
+	 */
+	public List<String> asList()
+	{
+		final WordStore[] stores = storesByLength.values().toArray(new WordStore[storesByLength.size()]);
+		return new AbstractList<String>() {
+			@Override
+			public String get(int index)
+			{
+				if (index < 0 || index >= size)
+				{
+					throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+				}
+				for (WordStore store : stores)
+				{
+					if (index < store.size())
+					{
+						return store.getWord(index);
+					}
+					index -= store.size();
+				}
+				throw new IllegalStateException("Word " + index + " not found");
+			}
+
+			@Override
+			public int size()
+			{
+				return size;
+			}
+		};
+	}
+
+	/*
+	 * Map a file written by write
+	 * @param file name
+	 * @return the dictionary
+	 */
+	public static BinaryDictionary map(String fileName) throws IOException
+	{
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		try
+		{
+			//The mapping stays valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+			{
+				throw new IOException("Not a binary dictionary file: " + fileName);
+			}
+			int numLengths = buffer.getInt(8);
+			Map<Integer, MappedWordStore> stores = new TreeMap<Integer, MappedWordStore>();
+			for (int i = 0; i < numLengths; i++)
+			{
+				int entry = HEADER_SIZE + i * ENTRY_SIZE;
+				int wordLength = buffer.getInt(entry);
+				int count = buffer.getInt(entry + 4);
+				int offset = buffer.getInt(entry + 8);
+				long end = (long) offset + (long) wordLength * count;
+				if (wordLength < 1 || count < 0 || offset < 0 || end > buffer.limit())
+				{
+					throw new IOException("Corrupt binary dictionary file: " + fileName);
+				}
+				if (wordLength > ScoringScratch.MAX_WORD_LENGTH)
+				{
+					throw new IOException("Words longer than " + ScoringScratch.MAX_WORD_LENGTH + " letters in "
+							+ fileName);
+				}
+				ByteBuffer records = buffer.duplicate();
+				records.position(offset);
+				records.limit((int) end);
+				stores.put(wordLength, new MappedWordStore(wordLength, count, records.slice()));
+			}
+			return new BinaryDictionary(stores);
+		} finally
+		{
+			channel.close();
+		}
+	}
+
+	/*
+	 * Write words to a binary dictionary file
+	 * @param words made of the letters 'a' to 'z'
+	 * @param file name
+	 * @throws IllegalArgumentException for a word with any other character or longer than
+	 *         ScoringScratch.MAX_WORD_LENGTH letters
+	 */
+	public static void write(List<String> words, String fileName) throws IOException
+	{
+		Map<Integer, List<String>> wordsByLength = new TreeMap<Integer, List<String>>();
+		for (String word : words)
+		{
+			WordBucket.checkWord(word);
+			List<String> group = wordsByLength.get(word.length());
+			if (group == null)
+			{
+				group = new ArrayList<String>();
+				wordsByLength.put(word.length(), group);
+			}
+			group.add(word);
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(wordsByLength.size());
+			long offset = HEADER_SIZE + (long) ENTRY_SIZE * wordsByLength.size();
+			for (Map.Entry<Integer, List<String>> entry : wordsByLength.entrySet())
+			{
+				if (offset > Integer.MAX_VALUE)
+				{
+					throw new IllegalArgumentException("Dictionary too large");
+				}
+				out.writeInt(entry.getKey());
+				out.writeInt(entry.getValue().size());
+				out.writeInt((int) offset);
+				offset += (long) entry.getKey() * entry.getValue().size();
+			}
+			for (List<String> group : wordsByLength.values())
+			{
+				for (String word : group)
+				{
+					out.writeBytes(word);
+				}
+			}
+		} finally
+		{
+			out.close();
+		}
+	}
+
+	/*
+	 * Convert a text dictionary to a binary dictionary.
+	 * Arguments: [text dictionary file] [binary dictionary file]
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		String wordListFileName = (args.length > 0) ? args[0] : "words.txt";
+		String binaryFileName = (args.length > 1) ? args[1] : "words.bin";
+
+		List<String> words = FileScanner.readLinesFromFile(wordListFileName);
+		write(words, binaryFileName);
+
+		long startTime = System.nanoTime();
+		BinaryDictionary dictionary = map(binaryFileName);
+		long mapMicros = (System.nanoTime() - startTime) / 1000L;
+		System.out.printf("Wrote %d words of %d lengths to %s, mapped in %d us%n", dictionary.size(),
+				dictionary.getWordLengths().size(), binaryFileName, mapMicros);
+	}
+}
@@ -0,0 +1,149 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Writes the games in a compact binary format: the int magic "HMRS" and the int version,
+ * then for every game
+ *   long game number, byte word length, the word letters one byte each,
+ *   the final pattern one byte per letter, short score, byte status ordinal,
+ *   byte number of guesses, every guess as byte length and letters,
+ *   long latency in nanoseconds
+ * The letters are ASCII.  read converts a file back into records for any other sink.
+ */
+public class BinaryResultSink implements ResultSink {
+
+	private static final int MAGIC = 0x484D5253; //"HMRS"
+	private static final int VERSION = 1;
+
+	private final DataOutputStream out;
+
+	/*
+	 * @param buffered stream to write to, closed with the sink
+	 */
+	public BinaryResultSink(OutputStream out) throws IOException
+	{
+		this.out = new DataOutputStream(out);
+		this.out.writeInt(MAGIC);
+		this.out.writeInt(VERSION);
+	}
+
+	@Override
+	public void write(GameRecord record) throws IOException
+	{
+		out.writeLong(record.getGameNumber());
+		writeLetters(record.getSecretWord());
+		out.writeBytes(record.getFinalPattern());
+		out.writeShort(record.getScore());
+		out.writeByte(record.getStatus().ordinal());
+		out.writeByte(record.getGuesses().size());
+		for (String guess : record.getGuesses())
+		{
+			writeLetters(guess);
+		}
+		out.writeLong(record.getLatencyNanos());
+	}
+
+	private void writeLetters(String letters) throws IOException
+	{
+		if (letters.length() > 255)
+		{
+			throw new IOException("Too long for the binary format: " + letters);
+		}
+		out.writeByte(letters.length());
+		out.writeBytes(letters);
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		out.close();
+	}
+
+	/*
+	 * Read a file written by this sink and pass every record on
+	 * @param file name
+	 * @param sink receiving the records, left open
+	 * @return number of records read
+	 */
+	public static long read(String fileName, ResultSink sink) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+		try
+		{
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+			{
+				throw new IOException("Not a binary results file: " + fileName);
+			}
+			HangmanGame.Status[] statuses = HangmanGame.Status.values();
+			long count = 0;
+			while (true)
+			{
+				long gameNumber;
+				try
+				{
+					gameNumber = in.readLong();
+				} catch (EOFException e)
+				{
+					return count;
+				}
+				String secretWord = readLetters(in, in.readUnsignedByte());
+				String finalPattern = readLetters(in, secretWord.length());
+				int score = in.readShort();
+				HangmanGame.Status status = statuses[in.readUnsignedByte()];
+				int numGuesses = in.readUnsignedByte();
+				List<String> guesses = new ArrayList<String>(numGuesses);
+				for (int i = 0; i < numGuesses; i++)
+				{
+					guesses.add(readLetters(in, in.readUnsignedByte()));
+				}
+				long latencyNanos = in.readLong();
+				sink.write(new GameRecord(gameNumber, secretWord, finalPattern, score, status, guesses, latencyNanos));
+				count++;
+			}
+		} finally
+		{
+			in.close();
+		}
+	}
+
+	private static String readLetters(DataInputStream in, int length) throws IOException
+	{
+		byte[] letters = new byte[length];
+		in.readFully(letters);
+		return new String(letters, "US-ASCII");
+	}
+
+	/*
+	 * Convert a binary results file to text, csv or jsonl on standard output.
+	 * Arguments: results file [text|csv|jsonl]
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 1)
+		{
+			System.out.println("Usage: java BinaryResultSink results.bin [text|csv|jsonl]");
+			return;
+		}
+		ResultSink sink = HangmanGameConsole.createResultSink((args.length > 1) ? args[1] : "csv", null);
+		try
+		{
+			read(args[0], sink);
+		} finally
+		{
+			sink.close();
+		}
+	}
+}
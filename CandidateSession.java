@@ -0,0 +1,191 @@
+import java.util.Random;
+
+/*
+ * The surviving word candidates of a single Hangman game.
+ * The first guess screens the whole length bucket of the dictionary.  Every later guess
+ * only refines the previous candidates with the letters and words guessed since then,
+ * so the cost of a guess follows the size of the candidate set instead of the bucket.
+ * The candidates are indexes into the length bucket, screened against its packed letter codes.
+ * The bucket is taken from the strategy's index on the first guess and kept for the whole game,
+ * so the game keeps a consistent snapshot when the dictionary is updated while it runs.
+ * The scoring buffers belong to the StrategyCursor of the thread making the guess, so a
+ * session only holds the state of its own game and may move between threads.
+ */
+public class CandidateSession implements GuessingStrategy {
+
+	private final HangmanGuessingStrategy strategy;
+
+	private final GameState game;
+
+	//Random source for picking among the word candidates
+	private final Random rand;
+
+	//Bucket of the secret word length, null until the first guess
+	private WordBucket bucket;
+
+	//Bucket indexes of the remaining possible word answers in the first numCandidates slots
+	private int[] wordCandidates;
+	private int numCandidates;
+
+	//Letters the candidates have already been screened against, see HangmanGame.letterBit
+	private int screenedLetterMask;
+	//Number of wrong words the candidates have already been screened against, in guessing order
+	private int numScreenedWords;
+
+	//Copy of the game board, refreshed before every refinement; null until the first guess
+	private char[] board;
+
+	/*
+	 * @param strategy that scores the candidates
+	 * @param the game this session follows
+	 * @param random source for picking among the word candidates
+	 */
+	public CandidateSession(HangmanGuessingStrategy strategy, GameState game, Random rand)
+	{
+		this.strategy = strategy;
+		this.game = game;
+		this.rand = rand;
+	}
+
+	@Override
+	public Guess nextGuess(HangmanGame game) {
+		if (game != this.game)
+		{
+			throw new IllegalArgumentException("Candidate session belongs to another game");
+		}
+		return strategy.nextGuess(game, this);
+	}
+
+	/*
+	 * @return the game this session follows
+	 */
+	GameState getGame()
+	{
+		return game;
+	}
+
+	/*
+	 * @return the bucket of the secret word length, null if the dictionary has no such words
+	 */
+	WordBucket getBucket()
+	{
+		return bucket;
+	}
+
+	/*
+	 * @return the bucket indexes of the word candidates that match the current game state,
+	 * only the first getNumCandidates() entries are used
+	 */
+	int[] getWordCandidates()
+	{
+		return wordCandidates;
+	}
+
+	int getNumCandidates()
+	{
+		return numCandidates;
+	}
+
+	Random getRandom()
+	{
+		return rand;
+	}
+
+	/*
+	 * @return the game board as of the last refine, with correctly guessed letters in position
+	 */
+	char[] getBoard()
+	{
+		return board;
+	}
+
+	/*
+	 * Bring the candidates up to date with the guesses made since the last call
+	 */
+	void refine()
+	{
+		int guessedLetterMask = game.getGuessedLetterMask();
+		int numIncorrectWords = game.getNumIncorrectlyGuessedWords();
+		if (board == null)
+		{
+			board = new char[game.getSecretWordLength()];
+		}
+		game.copyGuessedSoFar(board);
+
+		if (wordCandidates == null)
+		{
+			//First guess of the game, screen the whole length bucket
+			bucket = strategy.getBucket(game.getSecretWordLength());
+			wordCandidates = DictionaryIndex.screen(game, bucket);
+			numCandidates = wordCandidates.length;
+		} else
+		{
+			for (int bits = guessedLetterMask & ~screenedLetterMask; bits != 0; bits &= bits - 1)
+			{
+				screenByLetter((char) ('A' + Integer.numberOfTrailingZeros(bits)), board);
+			}
+
+			if (numIncorrectWords > numScreenedWords)
+			{
+				//The wrong words are kept in guessing order, only the new ones are screened
+				int index = 0;
+				for (String word : game.getIncorrectlyGuessedWords())
+				{
+					if (index++ >= numScreenedWords)
+					{
+						screenByWord(word);
+					}
+				}
+			}
+		}
+		screenedLetterMask = guessedLetterMask;
+		numScreenedWords = numIncorrectWords;
+	}
+
+	/*
+	 * Keep the words that have the guessed letter exactly where the game board shows it
+	 * @param the newly guessed letter (upper case)
+	 * @param current game board with correctly guessed letters in position
+	 */
+	private void screenByLetter(char letter, char[] wordGuessedSoFar)
+	{
+		byte[] letters = bucket.getLetterCodes();
+		int wordLength = wordGuessedSoFar.length;
+		int code = Character.toLowerCase(letter) - 'a';
+		int kept = 0;
+		wordLoop: for (int w = 0; w < numCandidates; w++)
+		{
+			int word = wordCandidates[w];
+			int offset = word * wordLength;
+			for (int i = 0; i < wordLength; i++)
+			{
+				boolean inWord = letters[offset + i] == code;
+				boolean onBoard = wordGuessedSoFar[i] == letter;
+				if (inWord != onBoard)
+				{
+					continue wordLoop;
+				}
+			}
+			wordCandidates[kept++] = word;
+		}
+		numCandidates = kept;
+	}
+
+	/*
+	 * Drop a wrongly guessed word from the candidates
+	 * @param the wrongly guessed word (upper case)
+	 */
+	private void screenByWord(String incorrectWord)
+	{
+		int kept = 0;
+		for (int w = 0; w < numCandidates; w++)
+		{
+			int word = wordCandidates[w];
+			if (!bucket.matches(word, incorrectWord))
+			{
+				wordCandidates[kept++] = word;
+			}
+		}
+		numCandidates = kept;
+	}
+}
@@ -0,0 +1,380 @@
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Command line options of HangmanGameConsole.
+ * The first plain number is the number of random words to score, every other option is
+ * a flag followed by its value:
+ *   -threads <n>   number of worker threads playing games in parallel (default 1)
+ *   -seed <n>      seed for picking the secret words and the strategy's random word guesses,
+ *                  a run with the same seed prints the same games and totals
+ *   -scoringThreads <n>     number of threads scoring a single large guess (default 0, off)
+ *   -parallelThreshold <n>  minimum number of word candidates for scoring a guess in parallel
+ *   -cacheSize <n> number of game state decisions shared between games (default 0, off)
+ *   -tree <file>   answer guesses from decision trees written by DecisionTreeCompiler
+ *   -binary <file> memory-map a dictionary written by BinaryDictionary instead of reading words.txt
+ *   -ingestThreads <n>      number of threads reading and indexing words.txt (default: all processors)
+ *   -metrics <file>         measure every guess and game, print a summary per word length and
+ *                           write the counters to the file at the end of the run
+ *   -metricsInterval <n>    also write the metrics file every n seconds during the run
+ *   -exhaustive <file>      play every dictionary word once instead of random words, checkpointing
+ *                           the finished words to the file and resuming from it when it exists
+ *   -checkpointInterval <n> seconds between checkpoints of an exhaustive run (default 60)
+ *   -results <format>       format of the game records: text (default), csv, jsonl or binary
+ *   -resultsFile <file>     write the game records to the file instead of standard output
+ *   -serve <port>           answer guess requests of HangmanServer's protocol on the port instead of playing
+ *   -book <file>            answer the first guesses of every game from an opening book, compiled to the
+ *                           file when it is missing or does not match the dictionary
+ *   -bookDepth <n>          number of guesses compiled into the opening book (default 3)
+ *   -lazyIndex              index and rank every word length on its first game instead of at load
+ *   -prewarm                like -lazyIndex, and build the other lengths on a background thread,
+ *                           the lengths games ask for most first
+ *   -lookahead <ms>         search a few guesses ahead within the time budget of every guess, falling
+ *                           back to the entropy guess when no search finishes in time (default 0, off)
+ *   -lookaheadDepth <n>     deepest lookahead search in guesses (default 4)
+ *   -sample <n>             pick the letter of candidate sets of at least n words from stratified samples
+ *                           of the candidates instead of all of them, n at least 2048 (default 0, off)
+ *   -sampleConfidence <p>   confidence that the sampled letter is the best, from 0.5 to below 1 (default 0.99)
+ */
+public class ConsoleOptions {
+
+	public static final String USAGE = "Usage: java -jar Hangman.jar [numGames] [-threads n] [-seed n]"
+			+ " [-scoringThreads n] [-parallelThreshold n] [-cacheSize n] [-tree file]"
+			+ " [-binary file] [-ingestThreads n] [-metrics file] [-metricsInterval n]"
+			+ " [-exhaustive file] [-checkpointInterval n] [-results text|csv|jsonl|binary] [-resultsFile file]"
+			+ " [-serve port] [-book file] [-bookDepth n] [-lazyIndex] [-prewarm]"
+			+ " [-lookahead ms] [-lookaheadDepth n] [-sample n] [-sampleConfidence p]";
+
+	private static final List<String> RESULT_FORMATS = Arrays.asList("text", "csv", "jsonl", "binary");
+	
+	private int numGames = 15;
+	private int numThreads = 1;
+	private Long seed = null;
+	private int scoringThreads = 0;
+	private int parallelThreshold = HangmanGuessingStrategy.DEFAULT_PARALLEL_THRESHOLD;
+	private int cacheSize = 0;
+	private String treeFileName = null;
+	private String binaryFileName = null;
+	private int ingestThreads = Runtime.getRuntime().availableProcessors();
+	private String metricsFileName = null;
+	private int metricsInterval = 0;
+	private String exhaustiveFileName = null;
+	private int checkpointInterval = 60;
+	private String resultFormat = null;
+	private String resultFileName = null;
+	private int servePort = 0;
+	private String bookFileName = null;
+	private int bookDepth = OpeningBook.DEFAULT_DEPTH;
+	private boolean lazyIndex = false;
+	private boolean prewarmIndex = false;
+	private int lookaheadMillis = 0;
+	private int lookaheadDepth = LookaheadGuessingStrategy.DEFAULT_MAX_DEPTH;
+	private int sampleThreshold = 0;
+	private double sampleConfidence = EntropySampler.DEFAULT_CONFIDENCE;
+
+	/*
+	 * @param command-line arguments
+	 * @return the parsed options
+	 * @throws IllegalArgumentException for an unknown flag or a missing or malformed value
+	 */
+	public static ConsoleOptions parse(String[] args)
+	{
+		ConsoleOptions options = new ConsoleOptions();
+		for (int i = 0; i < args.length; i++)
+		{
+			String arg = args[i];
+			if (HangmanGameConsole.isNumeric(arg) && arg.length() > 0)
+			{
+				options.numGames = Integer.parseInt(arg);
+			} else if (arg.equals("-threads"))
+			{
+				options.numThreads = parsePositive(arg, valueOf(args, ++i, arg));
+			} else if (arg.equals("-seed"))
+			{
+				options.seed = parseLong(arg, valueOf(args, ++i, arg));
+			} else if (arg.equals("-scoringThreads"))
+			{
+				options.scoringThreads = parsePositive(arg, valueOf(args, ++i, arg));
+			} else if (arg.equals("-parallelThreshold"))
+			{
+				options.parallelThreshold = parsePositive(arg, valueOf(args, ++i, arg));
+			} else if (arg.equals("-cacheSize"))
+			{
+				options.cacheSize = parsePositive(arg, valueOf(args, ++i, arg));
+			} else if (arg.equals("-tree"))
+			{
+				options.treeFileName = valueOf(args, ++i, arg);
+			} else if (arg.equals("-binary"))
+			{
+				options.binaryFileName = valueOf(args, ++i, arg);
+			} else if (arg.equals("-ingestThreads"))
+			{
+				options.ingestThreads = parsePositive(arg, valueOf(args, ++i, arg));
+			} else if (arg.equals("-metrics"))
+			{
+				options.metricsFileName = valueOf(args, ++i, arg);
+			} else if (arg.equals("-metricsInterval"))
+			{
+				options.metricsInterval = parsePositive(arg, valueOf(args, ++i, arg));
+			} else if (arg.equals("-exhaustive"))
+			{
+				options.exhaustiveFileName = valueOf(args, ++i, arg);
+			} else if (arg.equals("-checkpointInterval"))
+			{
+				options.checkpointInterval = parsePositive(arg, valueOf(args, ++i, arg));
+			} else if (arg.equals("-results"))
+			{
+				options.resultFormat = valueOf(args, ++i, arg);
+				if (!RESULT_FORMATS.contains(options.resultFormat))
+				{
+					throw new IllegalArgumentException("Unknown result format: " + options.resultFormat);
+				}
+			} else if (arg.equals("-resultsFile"))
+			{
+				options.resultFileName = valueOf(args, ++i, arg);
+			} else if (arg.equals("-serve"))
+			{
+				options.servePort = parsePositive(arg, valueOf(args, ++i, arg));
+			} else if (arg.equals("-book"))
+			{
+				options.bookFileName = valueOf(args, ++i, arg);
+			} else if (arg.equals("-bookDepth"))
+			{
+				options.bookDepth = parsePositive(arg, valueOf(args, ++i, arg));
+			} else if (arg.equals("-lazyIndex"))
+			{
+				options.lazyIndex = true;
+			} else if (arg.equals("-prewarm"))
+			{
+				options.prewarmIndex = true;
+			} else if (arg.equals("-lookahead"))
+			{
+				options.lookaheadMillis = parsePositive(arg, valueOf(args, ++i, arg));
+			} else if (arg.equals("-lookaheadDepth"))
+			{
+				options.lookaheadDepth = parsePositive(arg, valueOf(args, ++i, arg));
+			} else if (arg.equals("-sample"))
+			{
+				options.sampleThreshold = parsePositive(arg, valueOf(args, ++i, arg));
+				if (options.sampleThreshold < EntropySampler.MIN_THRESHOLD)
+				{
+					throw new IllegalArgumentException("Option " + arg + " must be at least "
+							+ EntropySampler.MIN_THRESHOLD + ": " + options.sampleThreshold);
+				}
+			} else if (arg.equals("-sampleConfidence"))
+			{
+				options.sampleConfidence = parseDouble(arg, valueOf(args, ++i, arg));
+				if (options.sampleConfidence < 0.5 || options.sampleConfidence >= 1)
+				{
+					throw new IllegalArgumentException("Option " + arg + " must be at least 0.5 and below 1: "
+							+ options.sampleConfidence);
+				}
+			} else
+			{
+				throw new IllegalArgumentException("Unknown option: " + arg);
+			}
+		}
+		if ("binary".equals(options.resultFormat) && options.resultFileName == null)
+		{
+			throw new IllegalArgumentException("Binary results need -resultsFile");
+		}
+		return options;
+	}
+
+	public int getNumGames()
+	{
+		return numGames;
+	}
+
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	/*
+	 * @return the seed, or null when the games should be different on every run
+	 */
+	public Long getSeed()
+	{
+		return seed;
+	}
+
+	/*
+	 * @return number of threads scoring a single guess, 0 to score on the game's own thread
+	 */
+	public int getScoringThreads()
+	{
+		return scoringThreads;
+	}
+
+	public int getParallelThreshold()
+	{
+		return parallelThreshold;
+	}
+
+	/*
+	 * @return maximum number of cached decisions, 0 for no cache
+	 */
+	public int getCacheSize()
+	{
+		return cacheSize;
+	}
+
+	/*
+	 * @return the decision tree file, or null to use the entropy strategy
+	 */
+	public String getTreeFileName()
+	{
+		return treeFileName;
+	}
+
+	/*
+	 * @return the binary dictionary file, or null to read the text dictionary
+	 */
+	public String getBinaryFileName()
+	{
+		return binaryFileName;
+	}
+	
+	public int getIngestThreads()
+	{
+		return ingestThreads;
+	}
+	
+	/*
+	 * @return the file to write the metrics to, or null to not measure
+	 */
+	public String getMetricsFileName()
+	{
+		return metricsFileName;
+	}
+	
+	/*
+	 * @return seconds between writes of the metrics file during the run, 0 to write it at the end only
+	 */
+	public int getMetricsInterval()
+	{
+		return metricsInterval;
+	}
+	
+	/*
+	 * @return the checkpoint file of an exhaustive run, or null to play random words
+	 */
+	public String getExhaustiveFileName()
+	{
+		return exhaustiveFileName;
+	}
+	
+	public int getCheckpointInterval()
+	{
+		return checkpointInterval;
+	}
+	
+	/*
+	 * @return the format of the game records, or null when not chosen
+	 */
+	public String getResultFormat()
+	{
+		return resultFormat;
+	}
+	
+	/*
+	 * @return the file of the game records, or null for standard output
+	 */
+	public String getResultFileName()
+	{
+		return resultFileName;
+	}
+	
+	/*
+	 * @return the port to serve guesses on, 0 to play games
+	 */
+	public int getServePort()
+	{
+		return servePort;
+	}
+	
+	/*
+	 * @return the opening book file, or null to decide every guess
+	 */
+	public String getBookFileName()
+	{
+		return bookFileName;
+	}
+	
+	public int getBookDepth()
+	{
+		return bookDepth;
+	}
+	
+	public boolean isLazyIndex()
+	{
+		return lazyIndex;
+	}
+	
+	public boolean isPrewarmIndex()
+	{
+		return prewarmIndex;
+	}
+	
+	public int getLookaheadMillis()
+	{
+		return lookaheadMillis;
+	}
+	
+	public int getLookaheadDepth()
+	{
+		return lookaheadDepth;
+	}
+	
+	public int getSampleThreshold()
+	{
+		return sampleThreshold;
+	}
+	
+	public double getSampleConfidence()
+	{
+		return sampleConfidence;
+	}
+	
+	private static String valueOf(String[] args, int index, String flag)
+	{
+		if (index >= args.length)
+		{
+			throw new IllegalArgumentException("Missing value for option: " + flag);
+		}
+		return args[index];
+	}
+
+	private static long parseLong(String flag, String value)
+	{
+		try
+		{
+			return Long.parseLong(value);
+		} catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid value for option " + flag + ": " + value);
+		}
+	}
+
+	private static double parseDouble(String flag, String value)
+	{
+		try
+		{
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid value for option " + flag + ": " + value);
+		}
+	}
+
+	private static int parsePositive(String flag, String value)
+	{
+		long number = parseLong(flag, value);
+		if (number < 1 || number > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Option " + flag + " must be a positive number: " + value);
+		}
+		return (int) number;
+	}
+}
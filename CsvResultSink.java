@@ -0,0 +1,75 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/*
+ * Writes one comma separated line per game after a header line:
+ *   game,secret_word,final_pattern,score,status,guesses,latency_ns
+ * The guesses are separated by spaces in the order they were made.
+ */
+public class CsvResultSink implements ResultSink {
+
+	public static final String HEADER = "game,secret_word,final_pattern,score,status,guesses,latency_ns";
+
+	private final Writer out;
+
+	/*
+	 * @param buffered writer to write to, closed with the sink
+	 */
+	public CsvResultSink(Writer out) throws IOException
+	{
+		this.out = out;
+		out.write(HEADER);
+		out.write('\n');
+	}
+
+	@Override
+	public void write(GameRecord record) throws IOException
+	{
+		StringBuilder line = new StringBuilder(64);
+		line.append(record.getGameNumber()).append(',');
+		line.append(quote(record.getSecretWord())).append(',');
+		line.append(quote(record.getFinalPattern())).append(',');
+		line.append(record.getScore()).append(',');
+		line.append(record.getStatus()).append(',');
+		StringBuilder guesses = new StringBuilder();
+		for (String guess : record.getGuesses())
+		{
+			if (guesses.length() > 0)
+			{
+				guesses.append(' ');
+			}
+			guesses.append(guess);
+		}
+		line.append(quote(guesses.toString())).append(',');
+		line.append(record.getLatencyNanos()).append('\n');
+		out.write(line.toString());
+	}
+
+	/*
+	 * @return the value, quoted when it holds a comma, a quote or a line break
+	 */
+	private static String quote(String value)
+	{
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if (c == ',' || c == '"' || c == '\n' || c == '\r')
+			{
+				return "\"" + value.replace("\"", "\"\"") + "\"";
+			}
+		}
+		return value;
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		out.close();
+	}
+}
@@ -0,0 +1,293 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * A bounded cache of strategy decisions keyed by the canonical state of a game.
+ * Games of the same length often reach the same state: the same revealed pattern, the same
+ * guessed letters and the same wrong words.  The strategy gives the same answer in the same
+ * state, so the answer is computed once and shared.
+ * A decision to guess a word keeps the candidate words instead of one picked word, and the word
+ * is picked with the random source of the asking game, just like an uncached decision.
+ * The cache is split into segments, each an LRU map guarded by its own lock, so it can be
+ * shared by games running on different threads.
+ */
+public class DecisionCache {
+
+	private static final int NUM_SEGMENTS = 16;
+
+	private final Segment[] segments = new Segment[NUM_SEGMENTS];
+
+	//Counted in LongAdders so the lookups of many threads do not contend on one counter
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/*
+	 * @param maximum number of cached decisions, evicting the least recently used beyond it
+	 */
+	public DecisionCache(int maxSize)
+	{
+		int segmentSize = Math.max(1, (maxSize + NUM_SEGMENTS - 1) / NUM_SEGMENTS);
+		for (int i = 0; i < NUM_SEGMENTS; i++)
+		{
+			segments[i] = new Segment(segmentSize);
+		}
+	}
+
+	/*
+	 * Create the canonical key of a game state: the revealed pattern, the guessed letters as a
+	 * bitmask and the sorted wrong words
+	 * @param current game state
+	 * @return the key of the state
+	 */
+	public static String createKey(GameState game)
+	{
+		StringBuilder key = new StringBuilder(game.getSecretWordLength() + 8);
+		key.append(game.getGuessedSoFar());
+		key.append('|').append(Integer.toHexString(game.getGuessedLetterMask()));
+		if (game.getNumIncorrectlyGuessedWords() > 0)
+		{
+			Set<String> incorrectlyGuessedWords = game.getIncorrectlyGuessedWords();
+			String[] sortedWords = incorrectlyGuessedWords.toArray(new String[incorrectlyGuessedWords.size()]);
+			Arrays.sort(sortedWords);
+			for (String word : sortedWords)
+			{
+				key.append('|').append(word);
+			}
+		}
+		return key.toString();
+	}
+
+	/*
+	 * @param canonical key of a game state
+	 * @return the cached decision, or null when the state has not been decided yet
+	 */
+	public Decision get(String key)
+	{
+		Decision decision = segmentFor(key).get(key);
+		if (decision != null)
+		{
+			hits.increment();
+		} else
+		{
+			misses.increment();
+		}
+		return decision;
+	}
+
+	/*
+	 * @param canonical key of a game state
+	 * @param the decision made in that state
+	 */
+	public void put(String key, Decision decision)
+	{
+		segmentFor(key).put(key, decision);
+	}
+
+	/*
+	 * Drop a decision unless another has replaced it
+	 * @param canonical key of a game state
+	 * @param the decision to drop
+	 */
+	public void remove(String key, Decision decision)
+	{
+		segmentFor(key).remove(key, decision);
+	}
+
+	/*
+	 * Drop the decisions of one word length, after its words changed
+	 * @param length of the words
+	 * @return number of decisions dropped
+	 */
+	public int invalidate(int wordLength)
+	{
+		int removed = 0;
+		for (Segment segment : segments)
+		{
+			removed += segment.removeLength(wordLength);
+		}
+		return removed;
+	}
+
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	/*
+	 * @return number of cached decisions
+	 */
+	public int size()
+	{
+		int size = 0;
+		for (Segment segment : segments)
+		{
+			size += segment.size();
+		}
+		return size;
+	}
+
+	@Override
+	public String toString()
+	{
+		long hitCount = getHits();
+		long total = hitCount + getMisses();
+		double hitRate = (total == 0) ? 0 : (double) hitCount / (double) total;
+		return String.format("hits=%d, misses=%d, hit rate=%.2f, size=%d", hitCount, getMisses(), hitRate, size());
+	}
+
+	private Segment segmentFor(String key)
+	{
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (NUM_SEGMENTS - 1)];
+	}
+
+	/*
+	 * The answer of the strategy in one game state
+	 */
+	public static class Decision {
+		//The letter to guess, 0 for a word guess
+		private final char letter;
+
+		//The words to pick the guess from for a word guess
+		private final String[] words;
+
+		//Number of word candidates in the state
+		private final int numCandidates;
+
+		private Decision(char letter, String[] words, int numCandidates)
+		{
+			this.letter = letter;
+			this.words = words;
+			this.numCandidates = numCandidates;
+		}
+
+		public static Decision letter(char letter, int numCandidates)
+		{
+			return new Decision(letter, null, numCandidates);
+		}
+
+		/*
+		 * @param the words to pick from, copied
+		 * @param number of words to pick from
+		 */
+		public static Decision word(String[] words, int numWords)
+		{
+			return new Decision((char) 0, Arrays.copyOf(words, numWords), numWords);
+		}
+
+		public int getNumCandidates()
+		{
+			return numCandidates;
+		}
+
+		/*
+		 * @return true to guess a letter, false to guess one of the words
+		 */
+		public boolean isLetter()
+		{
+			return words == null;
+		}
+
+		/*
+		 * @return the letter to guess (lower case), 0 for a word guess
+		 */
+		public char getLetter()
+		{
+			return letter;
+		}
+
+		/*
+		 * @return the words to pick the guess from, null for a letter guess
+		 */
+		public String[] getWords()
+		{
+			return words;
+		}
+
+		/*
+		 * @param random source of the asking game
+		 * @return the guess for the game
+		 */
+		public Guess toGuess(Random rand)
+		{
+			if (words == null)
+			{
+				return new GuessLetter(letter);
+			}
+			if (words.length == 1)
+			{
+				return new GuessWord(words[0]);
+			}
+			return new GuessWord(words[rand.nextInt(words.length)]);
+		}
+	}
+
+	/*
+	 * One lock-guarded LRU part of the cache
+	 */
+	private static class Segment {
+		private final Map<String, Decision> map;
+
+		Segment(final int maxSize)
+		{
+			this.map = new LinkedHashMap<String, Decision>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Decision> eldest)
+				{
+					return size() > maxSize;
+				}
+			};
+		}
+
+		synchronized Decision get(String key)
+		{
+			return map.get(key);
+		}
+
+		synchronized void put(String key, Decision decision)
+		{
+			map.put(key, decision);
+		}
+
+		synchronized void remove(String key, Decision decision)
+		{
+			if (map.get(key) == decision)
+			{
+				map.remove(key);
+			}
+		}
+
+		synchronized int size()
+		{
+			return map.size();
+		}
+
+		synchronized int removeLength(int wordLength)
+		{
+			int removed = 0;
+			for (Iterator<String> it = map.keySet().iterator(); it.hasNext();)
+			{
+				//The key starts with the board of the game
+				if (it.next().indexOf('|') == wordLength)
+				{
+					it.remove();
+					removed++;
+				}
+			}
+			return removed;
+		}
+	}
+}
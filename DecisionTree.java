@@ -0,0 +1,293 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * The precompiled guesses of the strategy for every reachable state of one word length.
+ * Each node is a game state and holds the guess made in it; each edge is an outcome of
+ * that guess.  A letter guess has one edge per reveal pattern of the letter (bit i set
+ * when the letter is at position i), and a word guess has a single edge for the miss.
+ * Edges either lead to another node or end the game.
+ * The nodes are stored in flat arrays with the edges of a node next to each other:
+ *   decision[n]   letter index 0-25 for a letter guess, or 26 + index into words for a word guess
+ *   firstEdge[n]  index of the first edge of node n, the edges end at firstEdge[n + 1]
+ *   edgeMask[e]   reveal pattern of the outcome, MISS_MASK for a wrong word
+ *   edgeTarget[e] node reached by the outcome, GAME_WON or GAME_LOST when the game ends, or
+ *                 NO_NODE when the tree was compiled to a depth limit that the outcome is past
+ * Every tree records the CRC-32 of the words it was compiled from (see WordBucket.checksum),
+ * and trees are only used with a dictionary whose words of the length have the same checksum.
+ */
+public class DecisionTree {
+
+	public static final int GAME_WON = -1;
+	public static final int GAME_LOST = -2;
+	//Returned by follow for an outcome that was never compiled
+	public static final int NO_NODE = -3;
+	public static final int MISS_MASK = -1;
+
+	//Node index of the empty board
+	public static final int ROOT = 0;
+
+	private static final int MAGIC = 0x484D4454; //"HMDT"
+	private static final int VERSION = 2;
+
+	private final int wordLength;
+	private final int numNodes;
+	private final int[] decision;
+	private final int[] firstEdge;
+	private final int[] edgeMask;
+	private final int[] edgeTarget;
+	private final String[] words;
+	//CRC-32 of the dictionary words of the length the tree was compiled from
+	private final long wordsChecksum;
+
+	/*
+	 * @param length of the words
+	 * @param number of nodes
+	 * @param guess of each node
+	 * @param first edge of each node, with one extra entry holding the number of edges
+	 * @param reveal pattern of each edge
+	 * @param target of each edge
+	 * @param the words guessed by the word guess nodes
+	 * @param checksum of the dictionary words of the length, see WordBucket.checksum
+	 */
+	public DecisionTree(int wordLength, int numNodes, int[] decision, int[] firstEdge, int[] edgeMask,
+			int[] edgeTarget, String[] words, long wordsChecksum)
+	{
+		this.wordLength = wordLength;
+		this.numNodes = numNodes;
+		this.decision = decision;
+		this.firstEdge = firstEdge;
+		this.edgeMask = edgeMask;
+		this.edgeTarget = edgeTarget;
+		this.words = words;
+		this.wordsChecksum = wordsChecksum;
+	}
+
+	public int getWordLength()
+	{
+		return wordLength;
+	}
+
+	public long getWordsChecksum()
+	{
+		return wordsChecksum;
+	}
+
+	public int getNumNodes()
+	{
+		return numNodes;
+	}
+
+	public int getNumEdges()
+	{
+		return firstEdge[numNodes];
+	}
+
+	public int getNumWords()
+	{
+		return words.length;
+	}
+
+	/*
+	 * @param node index
+	 * @return true if the node guesses a letter, false if it guesses a word
+	 */
+	public boolean isLetterNode(int node)
+	{
+		return decision[node] < WordBucket.ALPHABET_SIZE;
+	}
+
+	/*
+	 * @param node index of a letter guess
+	 * @return the guessed letter (lower case)
+	 */
+	public char getLetter(int node)
+	{
+		return (char) ('a' + decision[node]);
+	}
+
+	/*
+	 * @param node index of a word guess
+	 * @return the guessed word
+	 */
+	public String getWord(int node)
+	{
+		return words[decision[node] - WordBucket.ALPHABET_SIZE];
+	}
+
+	/*
+	 * Follow the edge of an outcome
+	 * @param node index
+	 * @param reveal pattern of the letter guess, or MISS_MASK for a wrong word guess
+	 * @return the node reached, GAME_WON or GAME_LOST, or NO_NODE when the outcome is not in the tree
+	 */
+	public int follow(int node, int mask)
+	{
+		for (int e = firstEdge[node]; e < firstEdge[node + 1]; e++)
+		{
+			if (edgeMask[e] == mask)
+			{
+				return edgeTarget[e];
+			}
+		}
+		return NO_NODE;
+	}
+
+	/*
+	 * @return approximate size of the tree in bytes
+	 */
+	public long byteSize()
+	{
+		long size = 4L * (decision.length + firstEdge.length + edgeMask.length + edgeTarget.length);
+		for (String word : words)
+		{
+			size += word.length();
+		}
+		return size;
+	}
+
+	/*
+	 * Write the trees of all word lengths to a file
+	 * @param file name
+	 * @param trees keyed by word length
+	 */
+	public static void writeTrees(String fileName, Map<Integer, DecisionTree> trees) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(trees.size());
+			for (DecisionTree tree : trees.values())
+			{
+				tree.write(out);
+			}
+		} finally
+		{
+			out.close();
+		}
+	}
+
+	/*
+	 * Make sure the trees were compiled from the words of the strategy's dictionary
+	 * @param trees keyed by word length
+	 * @param strategy whose dictionary the trees are used with
+	 * @throws IllegalStateException when the words of a length differ from the tree's
+	 */
+	public static void checkDictionary(Map<Integer, DecisionTree> trees, HangmanGuessingStrategy strategy)
+	{
+		for (DecisionTree tree : trees.values())
+		{
+			if (strategy.getChecksum(tree.getWordLength()) != tree.getWordsChecksum())
+			{
+				throw new IllegalStateException("Decision tree of length " + tree.getWordLength()
+						+ " was compiled from another dictionary, compile the trees again");
+			}
+		}
+	}
+
+	/*
+	 * Read the trees written by writeTrees
+	 * @param file name
+	 * @return trees keyed by word length
+	 */
+	public static Map<Integer, DecisionTree> readTrees(String fileName) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+		try
+		{
+			if (in.readInt() != MAGIC)
+			{
+				throw new IOException("Not a decision tree file: " + fileName);
+			}
+			if (in.readInt() != VERSION)
+			{
+				throw new IOException("Decision tree file of another version, compile it again: " + fileName);
+			}
+			int numTrees = in.readInt();
+			Map<Integer, DecisionTree> trees = new TreeMap<Integer, DecisionTree>();
+			for (int i = 0; i < numTrees; i++)
+			{
+				DecisionTree tree = read(in);
+				trees.put(tree.getWordLength(), tree);
+			}
+			return trees;
+		} finally
+		{
+			in.close();
+		}
+	}
+
+	/*
+	 * Write the tree to a stream
+	 * @param stream to write to
+	 */
+	void write(DataOutputStream out) throws IOException
+	{
+		int numEdges = getNumEdges();
+		out.writeByte(wordLength);
+		out.writeInt((int) wordsChecksum);
+		out.writeInt(numNodes);
+		out.writeInt(numEdges);
+		out.writeInt(words.length);
+		for (String word : words)
+		{
+			out.writeBytes(word);
+		}
+		for (int n = 0; n < numNodes; n++)
+		{
+			out.writeInt(decision[n]);
+			//Number of edges, the edges follow in node order
+			out.writeShort(firstEdge[n + 1] - firstEdge[n]);
+		}
+		for (int e = 0; e < numEdges; e++)
+		{
+			out.writeInt(edgeMask[e]);
+			out.writeInt(edgeTarget[e]);
+		}
+	}
+
+	/*
+	 * Read a tree written by write
+	 * @param stream to read from
+	 * @return the tree
+	 */
+	static DecisionTree read(DataInputStream in) throws IOException
+	{
+		int wordLength = in.readUnsignedByte();
+		long wordsChecksum = in.readInt() & 0xFFFFFFFFL;
+		int numNodes = in.readInt();
+		int numEdges = in.readInt();
+		String[] words = new String[in.readInt()];
+		byte[] wordBytes = new byte[wordLength];
+		for (int i = 0; i < words.length; i++)
+		{
+			in.readFully(wordBytes);
+			words[i] = new String(wordBytes, "US-ASCII");
+		}
+		int[] decision = new int[numNodes];
+		int[] firstEdge = new int[numNodes + 1];
+		for (int n = 0; n < numNodes; n++)
+		{
+			decision[n] = in.readInt();
+			firstEdge[n + 1] = firstEdge[n] + in.readUnsignedShort();
+		}
+		int[] edgeMask = new int[numEdges];
+		int[] edgeTarget = new int[numEdges];
+		for (int e = 0; e < numEdges; e++)
+		{
+			edgeMask[e] = in.readInt();
+			edgeTarget[e] = in.readInt();
+		}
+		return new DecisionTree(wordLength, numNodes, decision, firstEdge, edgeMask, edgeTarget, words,
+				wordsChecksum);
+	}
+}
@@ -0,0 +1,383 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Offline compiler of decision trees: runs the entropy strategy over every reachable state
+ * of every word length and writes the guesses to a file read by DecisionTreeStrategy.
+ * The tree starts with the console's opening letter for the length, then follows the
+ * strategy's decision in every state.  States after the game is lost are not compiled.
+ * Word guesses pick among the candidates with a random source seeded per length, so the
+ * same dictionary and seed always compile the same trees.  The lengths are compiled in
+ * parallel, longest bucket first.
+ * A depth limit compiles only the first guesses of every game, as for an OpeningBook; the
+ * outcomes below the limit lead to NO_NODE.
+ */
+public class DecisionTreeCompiler {
+
+	private final HangmanGuessingStrategy strategy;
+	private final int maxWrongGuesses;
+	private final long seed;
+	private final int maxDepth;
+
+	/*
+	 * @param strategy to compile
+	 * @param maximum number of wrong guesses of a game
+	 * @param seed for picking among word candidates
+	 */
+	public DecisionTreeCompiler(HangmanGuessingStrategy strategy, int maxWrongGuesses, long seed)
+	{
+		this(strategy, maxWrongGuesses, seed, Integer.MAX_VALUE);
+	}
+
+	/*
+	 * @param strategy to compile
+	 * @param maximum number of wrong guesses of a game
+	 * @param seed for picking among word candidates
+	 * @param maximum number of guesses compiled along any path
+	 */
+	public DecisionTreeCompiler(HangmanGuessingStrategy strategy, int maxWrongGuesses, long seed, int maxDepth)
+	{
+		this.strategy = strategy;
+		this.maxWrongGuesses = maxWrongGuesses;
+		this.seed = seed;
+		this.maxDepth = maxDepth;
+	}
+
+	/*
+	 * Compile the tree of one word length
+	 * @param length of the words
+	 * @param the letter guessed on the empty board, 0 to let the strategy decide it
+	 * @return the decision tree
+	 */
+	public DecisionTree compile(int wordLength, char openingLetter)
+	{
+		WordBucket bucket = strategy.getBucket(wordLength);
+		if (bucket == null)
+		{
+			throw new IllegalArgumentException("No words of length " + wordLength);
+		}
+		TreeBuilder builder = new TreeBuilder(bucket);
+		char[] wordGuessedSoFar = new char[wordLength];
+		Arrays.fill(wordGuessedSoFar, HangmanGame.MYSTERY_LETTER);
+		int[] wordCandidates = new int[bucket.size()];
+		for (int i = 0; i < wordCandidates.length; i++)
+		{
+			wordCandidates[i] = i;
+		}
+		builder.expand(wordGuessedSoFar, wordCandidates, wordCandidates.length, 0, 0, openingLetter);
+		return builder.build();
+	}
+
+	/*
+	 * Compile the trees of all word lengths in parallel
+	 * @param opening letter of each word length
+	 * @param number of threads
+	 * @param table to receive the build time of each length in milliseconds
+	 * @return the trees keyed by word length
+	 */
+	public Map<Integer, DecisionTree> compileAll(final Map<Integer, Character> openingLetters, int numThreads,
+			Map<Integer, Long> buildMillis) throws InterruptedException, ExecutionException
+	{
+		//Longest buckets first so they do not end up last on a single thread
+		List<Integer> lengths = new ArrayList<Integer>(openingLetters.keySet());
+		Collections.sort(lengths, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b)
+			{
+				return strategy.getNumWords(b) - strategy.getNumWords(a);
+			}
+		});
+
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try
+		{
+			Map<Integer, Future<DecisionTree>> futures = new HashMap<Integer, Future<DecisionTree>>();
+			final Map<Integer, Long> millis = new ConcurrentHashMap<Integer, Long>();
+			for (final Integer length : lengths)
+			{
+				futures.put(length, pool.submit(new Callable<DecisionTree>() {
+					@Override
+					public DecisionTree call()
+					{
+						long start = System.nanoTime();
+						DecisionTree tree = compile(length, openingLetters.get(length));
+						millis.put(length, (System.nanoTime() - start) / 1000000L);
+						return tree;
+					}
+				}));
+			}
+			Map<Integer, DecisionTree> trees = new TreeMap<Integer, DecisionTree>();
+			for (Integer length : openingLetters.keySet())
+			{
+				trees.put(length, futures.get(length).get());
+			}
+			buildMillis.putAll(millis);
+			return trees;
+		} finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	/*
+	 * Grows the flat node and edge arrays of one tree in pre-order.  The edges of a node are
+	 * reserved before its children are expanded, so they stay next to each other.
+	 */
+	private class TreeBuilder {
+		private final WordBucket bucket;
+		private final int wordLength;
+		private final ScoringScratch scratch = new ScoringScratch();
+		private final Random rand;
+
+		private int numNodes;
+		private int[] decision = new int[1024];
+		private int[] firstEdge = new int[1025];
+		private int numEdges;
+		private int[] edgeMask = new int[1024];
+		private int[] edgeTarget = new int[1024];
+		private final List<String> words = new ArrayList<String>();
+		private final Map<String, Integer> wordIndex = new HashMap<String, Integer>();
+
+		TreeBuilder(WordBucket bucket)
+		{
+			this.bucket = bucket;
+			this.wordLength = bucket.getWordLength();
+			this.rand = new Random(seed * 31 + wordLength);
+		}
+
+		/*
+		 * Add the node of a game state and everything reachable from it
+		 * @param current game board
+		 * @param bucket indexes of the word candidates of the state in dictionary order
+		 * @param number of word candidates
+		 * @param number of wrong guesses made
+		 * @param number of guesses made
+		 * @param letter to guess instead of asking the strategy, 0 if none
+		 * @return index of the node
+		 */
+		int expand(char[] wordGuessedSoFar, int[] wordCandidates, int numCandidates, int wrongGuesses, int depth,
+				char forcedLetter)
+		{
+			int node = addNode();
+			char letter = forcedLetter;
+			String word = null;
+			if (letter == 0)
+			{
+				DecisionCache.Decision decided = strategy.decide(wordGuessedSoFar, bucket, wordCandidates, numCandidates,
+						scratch);
+				if (decided.isLetter())
+				{
+					letter = decided.getLetter();
+				} else
+				{
+					String[] choices = decided.getWords();
+					word = (choices.length == 1) ? choices[0] : choices[rand.nextInt(choices.length)];
+				}
+			}
+
+			if (word != null)
+			{
+				decision[node] = WordBucket.ALPHABET_SIZE + indexOf(word);
+				if (numCandidates == 1)
+				{
+					//The guess can not miss
+					return node;
+				}
+				int edge = reserveEdges(node, 1);
+				edgeMask[edge] = DecisionTree.MISS_MASK;
+				if (wrongGuesses + 1 > maxWrongGuesses)
+				{
+					edgeTarget[edge] = DecisionTree.GAME_LOST;
+				} else if (depth + 1 >= maxDepth)
+				{
+					edgeTarget[edge] = DecisionTree.NO_NODE;
+				} else
+				{
+					int[] remaining = new int[numCandidates - 1];
+					int kept = 0;
+					for (int w = 0; w < numCandidates; w++)
+					{
+						if (!bucket.matches(wordCandidates[w], word))
+						{
+							remaining[kept++] = wordCandidates[w];
+						}
+					}
+					//Expanding may grow the edge arrays, so store the target afterwards
+					int child = expand(wordGuessedSoFar, remaining, kept, wrongGuesses + 1, depth + 1, (char) 0);
+					edgeTarget[edge] = child;
+				}
+				return node;
+			}
+
+			decision[node] = letter - 'a';
+			//Group the candidates by the reveal pattern of the letter, in order of first appearance
+			byte[] letters = bucket.getLetterCodes();
+			int code = letter - 'a';
+			Map<Integer, List<Integer>> groups = new LinkedHashMap<Integer, List<Integer>>();
+			for (int w = 0; w < numCandidates; w++)
+			{
+				int candidate = wordCandidates[w];
+				int mask = 0;
+				for (int i = 0; i < wordLength; i++)
+				{
+					if (letters[candidate * wordLength + i] == code)
+					{
+						mask |= 1 << i;
+					}
+				}
+				List<Integer> group = groups.get(mask);
+				if (group == null)
+				{
+					group = new ArrayList<Integer>();
+					groups.put(mask, group);
+				}
+				group.add(candidate);
+			}
+
+			int edge = reserveEdges(node, groups.size());
+			for (Map.Entry<Integer, List<Integer>> entry : groups.entrySet())
+			{
+				int mask = entry.getKey();
+				edgeMask[edge] = mask;
+				int childWrongGuesses = (mask == 0) ? wrongGuesses + 1 : wrongGuesses;
+				char[] childGuessedSoFar = wordGuessedSoFar.clone();
+				boolean solved = true;
+				for (int i = 0; i < wordLength; i++)
+				{
+					if ((mask & (1 << i)) != 0)
+					{
+						childGuessedSoFar[i] = Character.toUpperCase(letter);
+					}
+					solved &= childGuessedSoFar[i] != HangmanGame.MYSTERY_LETTER;
+				}
+				if (childWrongGuesses > maxWrongGuesses)
+				{
+					edgeTarget[edge] = DecisionTree.GAME_LOST;
+				} else if (solved)
+				{
+					edgeTarget[edge] = DecisionTree.GAME_WON;
+				} else if (depth + 1 >= maxDepth)
+				{
+					edgeTarget[edge] = DecisionTree.NO_NODE;
+				} else
+				{
+					List<Integer> group = entry.getValue();
+					int[] childCandidates = new int[group.size()];
+					for (int w = 0; w < childCandidates.length; w++)
+					{
+						childCandidates[w] = group.get(w);
+					}
+					int child = expand(childGuessedSoFar, childCandidates, childCandidates.length,
+							childWrongGuesses, depth + 1, (char) 0);
+					edgeTarget[edge] = child;
+				}
+				edge++;
+			}
+			return node;
+		}
+
+		DecisionTree build()
+		{
+			firstEdge[numNodes] = numEdges;
+			return new DecisionTree(wordLength, numNodes, Arrays.copyOf(decision, numNodes),
+					Arrays.copyOf(firstEdge, numNodes + 1), Arrays.copyOf(edgeMask, numEdges),
+					Arrays.copyOf(edgeTarget, numEdges), words.toArray(new String[words.size()]), bucket.checksum());
+		}
+
+		private int addNode()
+		{
+			if (numNodes == decision.length)
+			{
+				decision = Arrays.copyOf(decision, decision.length * 2);
+				firstEdge = Arrays.copyOf(firstEdge, decision.length + 1);
+			}
+			firstEdge[numNodes] = numEdges;
+			return numNodes++;
+		}
+
+		private int reserveEdges(int node, int count)
+		{
+			while (numEdges + count > edgeMask.length)
+			{
+				edgeMask = Arrays.copyOf(edgeMask, edgeMask.length * 2);
+				edgeTarget = Arrays.copyOf(edgeTarget, edgeTarget.length * 2);
+			}
+			int first = numEdges;
+			numEdges += count;
+			return first;
+		}
+
+		private int indexOf(String word)
+		{
+			Integer index = wordIndex.get(word);
+			if (index == null)
+			{
+				index = words.size();
+				words.add(word);
+				wordIndex.put(word, index);
+			}
+			return index;
+		}
+	}
+
+	/*
+	 * Compile the trees of words.txt and report their size and build time per length.
+	 * Arguments: [dictionary file] [tree file] [number of threads]
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException
+	{
+		String wordListFileName = (args.length > 0) ? args[0] : "words.txt";
+		String treeFileName = (args.length > 1) ? args[1] : "trees.bin";
+		int numThreads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int maxGuesses = 5;
+
+		HangmanGameConsole console = new HangmanGameConsole(wordListFileName);
+		console.setIngestThreads(numThreads);
+		DictionaryIngest dictionary = console.ingestWordList();
+		HangmanGuessingStrategy strategy = new HangmanGuessingStrategy(dictionary, null,
+				HangmanGuessingStrategy.DEFAULT_PARALLEL_THRESHOLD, null);
+
+		Map<Integer, Character> openingLetters = new TreeMap<Integer, Character>();
+		for (int length : strategy.getWordLengths())
+		{
+			openingLetters.put(length, console.getOpeningLetter(length));
+		}
+
+		final long startTime = System.currentTimeMillis();
+		DecisionTreeCompiler compiler = new DecisionTreeCompiler(strategy, maxGuesses, 0);
+		Map<Integer, Long> buildMillis = new HashMap<Integer, Long>();
+		Map<Integer, DecisionTree> trees = compiler.compileAll(openingLetters, numThreads, buildMillis);
+		DecisionTree.writeTrees(treeFileName, trees);
+		final long duration = System.currentTimeMillis() - startTime;
+
+		System.out.println("Length    Words     Nodes     Edges     Bytes  Build(ms)");
+		long totalNodes = 0;
+		long totalBytes = 0;
+		for (DecisionTree tree : trees.values())
+		{
+			int length = tree.getWordLength();
+			System.out.printf("%6d %8d %9d %9d %9d %10d%n", length, strategy.getNumWords(length),
+					tree.getNumNodes(), tree.getNumEdges(), tree.byteSize(), buildMillis.get(length));
+			totalNodes += tree.getNumNodes();
+			totalBytes += tree.byteSize();
+		}
+		System.out.println("------------------------");
+		System.out.printf("Total Nodes: %d, Total Bytes: %d%n", totalNodes, totalBytes);
+		System.out.printf("Build Time (sec): %.2f on %d threads%n", (float) duration / (float) 1000, numThreads);
+	}
+}
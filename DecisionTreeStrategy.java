@@ -0,0 +1,120 @@
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Answers guesses by walking precompiled decision trees instead of screening candidates.
+ * Starting at the empty board, the walk follows the outcome of every guess the tree made
+ * until it reaches a guess the game has not seen yet, which is the answer.  The walk is
+ * bounded by the number of guesses in a game, so a guess costs the same for every word length.
+ * A game that made guesses the tree did not (or has no tree for its length) is handed to the
+ * fallback strategy.  The trees are read-only, so the strategy can be shared by any number
+ * of games and threads.
+ */
+public class DecisionTreeStrategy implements GuessingStrategy {
+
+	private final Map<Integer, DecisionTree> trees;
+
+	private final GuessingStrategy fallback;
+
+	/*
+	 * @param trees keyed by word length
+	 * @param strategy for states outside of the trees, null to give up on them
+	 */
+	public DecisionTreeStrategy(Map<Integer, DecisionTree> trees, GuessingStrategy fallback)
+	{
+		this.trees = trees;
+		this.fallback = fallback;
+	}
+
+	/*
+	 * @param strategy for states outside of the trees, null to give up on them
+	 * @return a strategy walking the same trees with another fallback, such as a session of one game
+	 */
+	public DecisionTreeStrategy withFallback(GuessingStrategy fallback)
+	{
+		return new DecisionTreeStrategy(trees, fallback);
+	}
+
+	/*
+	 * @return the strategy for states outside of the trees, null if none
+	 */
+	public GuessingStrategy getFallback()
+	{
+		return fallback;
+	}
+
+	@Override
+	public Guess nextGuess(HangmanGame game) {
+		DecisionTree tree = trees.get(game.getSecretWordLength());
+		if (tree != null)
+		{
+			Guess guess = walk(tree, game);
+			if (guess != null)
+			{
+				return guess;
+			}
+		}
+		return (fallback != null) ? fallback.nextGuess(game) : null;
+	}
+
+	/*
+	 * Follow the guesses of the game through the tree
+	 * @param the tree of the game's word length
+	 * @param current game state
+	 * @return the guess of the tree, or null when the game is not in the tree
+	 */
+	static Guess walk(DecisionTree tree, GameState game)
+	{
+		int guessedLetterMask = game.getGuessedLetterMask();
+		Set<String> incorrectlyGuessedWords = game.getIncorrectlyGuessedWords();
+		//Guesses of the game found on the path so far
+		int pathLetters = 0;
+		int pathWords = 0;
+
+		int node = DecisionTree.ROOT;
+		while (node >= 0)
+		{
+			if (tree.isLetterNode(node))
+			{
+				char letter = Character.toUpperCase(tree.getLetter(node));
+				if ((guessedLetterMask & HangmanGame.letterBit(letter)) == 0)
+				{
+					return isOnPath(pathLetters, pathWords, game)
+							? new GuessLetter(tree.getLetter(node)) : null;
+				}
+				pathLetters++;
+				int mask = 0;
+				for (int i = 0; i < game.getSecretWordLength(); i++)
+				{
+					if (game.getGuessedSoFarAt(i) == letter)
+					{
+						mask |= 1 << i;
+					}
+				}
+				node = tree.follow(node, mask);
+			} else
+			{
+				String word = tree.getWord(node);
+				if (!incorrectlyGuessedWords.contains(word.toUpperCase()))
+				{
+					return isOnPath(pathLetters, pathWords, game)
+							? new GuessWord(word) : null;
+				}
+				pathWords++;
+				node = tree.follow(node, DecisionTree.MISS_MASK);
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * @return true when every guess of the game was made along the path
+	 */
+	private static boolean isOnPath(int pathLetters, int pathWords, GameState game)
+	{
+		//Only a HangmanGame can hold guesses of characters outside 'A' to 'Z'
+		boolean otherLetters = (game instanceof HangmanGame) && ((HangmanGame) game).hasGuessedOtherLetters();
+		return pathLetters == Integer.bitCount(game.getGuessedLetterMask()) && !otherLetters
+				&& pathWords == game.getNumIncorrectlyGuessedWords();
+	}
+}
@@ -0,0 +1,621 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * The word index of a dictionary: one WordBucket per word length.
+ * The words of every length are known when the constructor returns, but the bucket of a
+ * length is only built the first time it is asked for, so a workload that plays a few lengths
+ * never pays for indexing the others.  The first request for a length builds its bucket and
+ * concurrent first requests wait for that one build.  prewarm builds the remaining buckets
+ * ahead of the games, the most requested lengths first.
+ * A built bucket is never changed, so any number of threads can read it without locking, and
+ * strategies with different settings can share a single copy of the index instead of each
+ * indexing the dictionary again.
+ * The index itself is never changed either: withChanges and withWords return a new version
+ * that shares the lengths whose words are unchanged and rebuilds only the others, so a game
+ * holding a bucket of an older version keeps screening a consistent snapshot.
+ * All per-game and per-thread working state lives outside the index, in CandidateSession and
+ * StrategyCursor.
+ */
+public class DictionaryIndex {
+
+	private final Map<Integer, LengthIndex> indexesByLength;
+
+	private final SortedSet<Integer> wordLengths;
+
+	//Number of updates since the first version
+	private final long version;
+
+	//Buckets built so far and the time spent building them
+	private final AtomicInteger numBuilt = new AtomicInteger();
+	private final LongAdder buildNanos = new LongAdder();
+
+	/*
+	 * Group the words by length, each group is indexed when it is first used
+	 * @param words list
+	 * @throws IllegalArgumentException for a word that WordBucket.checkWord rejects
+	 */
+	public DictionaryIndex(List<String> words)
+	{
+		this(divideWordsByLength(words).values());
+	}
+
+	/*
+	 * Index the words of a memory-mapped dictionary without parsing them, each length when it
+	 * is first used.  Indexing a length copies its records into a heap array of one byte per
+	 * letter, because scoring reads the letter codes from a plain array.
+	 * @param binary dictionary
+	 */
+	public DictionaryIndex(BinaryDictionary dictionary)
+	{
+		this(indexWordStores(dictionary));
+	}
+
+	/*
+	 * Use the index built while ingesting the dictionary, or index every length when it is
+	 * first used if the ingest skipped indexing
+	 * @param ingested dictionary
+	 */
+	public DictionaryIndex(DictionaryIngest dictionary)
+	{
+		this((dictionary.getBuckets() != null) ? indexBuckets(dictionary.getBuckets())
+				: indexWordLists(dictionary.getWordsByLength()));
+	}
+
+	/*
+	 * @param buckets keyed by word length, copied
+	 */
+	public DictionaryIndex(Map<Integer, WordBucket> bucketsByLength)
+	{
+		this(indexBuckets(bucketsByLength));
+	}
+
+	/*
+	 * @param the index of every length
+	 */
+	private DictionaryIndex(Collection<LengthIndex> indexes)
+	{
+		this(indexes, 0);
+	}
+
+	/*
+	 * @param the index of every length
+	 * @param number of updates since the first version
+	 */
+	private DictionaryIndex(Collection<LengthIndex> indexes, long version)
+	{
+		this.version = version;
+		Map<Integer, LengthIndex> indexesByLength = new HashMap<Integer, LengthIndex>();
+		for (LengthIndex index : indexes)
+		{
+			indexesByLength.put(index.wordLength, index);
+			if (index.bucket != null)
+			{
+				numBuilt.incrementAndGet();
+			}
+		}
+		this.indexesByLength = Collections.unmodifiableMap(indexesByLength);
+		this.wordLengths = Collections.unmodifiableSortedSet(new TreeSet<Integer>(indexesByLength.keySet()));
+	}
+
+	/*
+	 * Create a hashTable with the length of words as key and its corresponding unbuilt index
+	 * of words as value
+	 * @param words list
+	 * @return a map of word indexes keyed by the word character length
+	 */
+	private static Map<Integer, LengthIndex> divideWordsByLength(List<String> words)
+	{
+		Map<Integer, List<String>> wordsByLength = new HashMap<Integer, List<String>>();
+
+		for (String word : words)
+		{
+			//Check now, a lazily built length would only fail on its first game
+			WordBucket.checkWord(word);
+			Integer wordLength = word.length();
+			if (wordsByLength.containsKey(wordLength))
+			{
+				//Add to existing list of certain length
+				wordsByLength.get(wordLength).add(word);
+			} else
+			{
+				//Create a new list for this length
+				List<String> newWordList = new ArrayList<String>();
+				newWordList.add(word);
+				wordsByLength.put(wordLength, newWordList);
+			}
+		}
+		Map<Integer, LengthIndex> dictionary = new HashMap<Integer, LengthIndex>();
+		for (LengthIndex index : indexWordLists(wordsByLength))
+		{
+			dictionary.put(index.wordLength, index);
+		}
+		return dictionary;
+	}
+
+	/*
+	 * @param words of every length
+	 * @return an unbuilt index of every length
+	 */
+	private static List<LengthIndex> indexWordLists(Map<Integer, List<String>> wordsByLength)
+	{
+		List<LengthIndex> indexes = new ArrayList<LengthIndex>();
+		for (Map.Entry<Integer, List<String>> entry : wordsByLength.entrySet())
+		{
+			indexes.add(new LengthIndex(entry.getKey(), entry.getValue(), null));
+		}
+		return indexes;
+	}
+
+	/*
+	 * @param binary dictionary
+	 * @return an unbuilt index of every length
+	 */
+	private static List<LengthIndex> indexWordStores(BinaryDictionary binaryDictionary)
+	{
+		List<LengthIndex> indexes = new ArrayList<LengthIndex>();
+		for (int wordLength : binaryDictionary.getWordLengths())
+		{
+			indexes.add(new LengthIndex(wordLength, null, binaryDictionary.getStore(wordLength)));
+		}
+		return indexes;
+	}
+
+	/*
+	 * @param buckets keyed by word length
+	 * @return a built index of every length
+	 */
+	private static List<LengthIndex> indexBuckets(Map<Integer, WordBucket> bucketsByLength)
+	{
+		List<LengthIndex> indexes = new ArrayList<LengthIndex>();
+		for (WordBucket bucket : bucketsByLength.values())
+		{
+			indexes.add(new LengthIndex(bucket));
+		}
+		return indexes;
+	}
+
+	/*
+	 * Create the next version with words added and removed.  The lengths of the changed words get
+	 * new buckets, built now if their old bucket was built, every other length is shared.
+	 * @param words to add, words already in the dictionary are skipped
+	 * @param words to remove, words not in the dictionary are skipped
+	 * @return the new version, or this version when no word changed
+	 * @throws IllegalArgumentException for an added word that WordBucket.checkWord rejects, before any
+	 *         word is changed
+	 */
+	public DictionaryIndex withChanges(Collection<String> added, Collection<String> removed)
+	{
+		Map<Integer, Set<String>> addedByLength = groupByLength(added, true);
+		Map<Integer, Set<String>> removedByLength = groupByLength(removed, false);
+		Set<Integer> lengths = new TreeSet<Integer>(addedByLength.keySet());
+		lengths.addAll(removedByLength.keySet());
+
+		Map<Integer, LengthIndex> indexes = new HashMap<Integer, LengthIndex>(indexesByLength);
+		boolean changed = false;
+		for (Integer length : lengths)
+		{
+			LengthIndex old = indexesByLength.get(length);
+			List<String> words = (old != null) ? old.getWords() : new ArrayList<String>();
+			Set<String> removedWords = removedByLength.get(length);
+			Set<String> addedWords = addedByLength.get(length);
+			int oldSize = words.size();
+			if (removedWords != null)
+			{
+				words.removeAll(removedWords);
+			}
+			boolean lengthChanged = words.size() != oldSize;
+			if (addedWords != null)
+			{
+				Set<String> present = new HashSet<String>(words);
+				for (String word : addedWords)
+				{
+					if (present.add(word))
+					{
+						words.add(word);
+						lengthChanged = true;
+					}
+				}
+			}
+			if (lengthChanged)
+			{
+				changed = true;
+				replace(indexes, length, old, words);
+			}
+		}
+		return changed ? new DictionaryIndex(indexes.values(), version + 1) : this;
+	}
+
+	/*
+	 * Create the next version from a changed dictionary.  The lengths whose words differ get new
+	 * buckets, built now if their old bucket was built, every other length is shared.
+	 * @param all the words of the dictionary
+	 * @return the new version, or this version when no length changed
+	 * @throws IllegalArgumentException for a word that WordBucket.checkWord rejects
+	 */
+	public DictionaryIndex withWords(List<String> words)
+	{
+		Map<Integer, List<String>> wordsByLength = new HashMap<Integer, List<String>>();
+		for (String word : words)
+		{
+			WordBucket.checkWord(word);
+			List<String> group = wordsByLength.get(word.length());
+			if (group == null)
+			{
+				group = new ArrayList<String>();
+				wordsByLength.put(word.length(), group);
+			}
+			group.add(word);
+		}
+		Set<Integer> lengths = new TreeSet<Integer>(wordsByLength.keySet());
+		lengths.addAll(indexesByLength.keySet());
+
+		Map<Integer, LengthIndex> indexes = new HashMap<Integer, LengthIndex>(indexesByLength);
+		boolean changed = false;
+		for (Integer length : lengths)
+		{
+			LengthIndex old = indexesByLength.get(length);
+			List<String> group = wordsByLength.get(length);
+			if (group == null)
+			{
+				group = new ArrayList<String>();
+			}
+			if (old == null || old.numWords != group.size() || !old.getWords().equals(group))
+			{
+				changed = true;
+				replace(indexes, length, old, group);
+			}
+		}
+		return changed ? new DictionaryIndex(indexes.values(), version + 1) : this;
+	}
+
+	/*
+	 * Put the new words of a length into the next version's indexes
+	 * @param indexes of the next version
+	 * @param length of the words
+	 * @param index of the length in this version, null if it had none
+	 * @param the words of the length in the next version, none to drop the length
+	 */
+	private static void replace(Map<Integer, LengthIndex> indexes, int length, LengthIndex old, List<String> words)
+	{
+		if (words.isEmpty())
+		{
+			indexes.remove(length);
+			return;
+		}
+		LengthIndex index = new LengthIndex(length, words, null);
+		if (old != null && old.bucket != null)
+		{
+			//Keep a built length built, so its next game does not wait for the build
+			index.bucket = new WordBucket(length, words);
+			index.words = null;
+		}
+		indexes.put(length, index);
+	}
+
+	/*
+	 * @param words in any case
+	 * @param true to check the words with WordBucket.checkWord
+	 * @return the trimmed lower case words grouped by length, blank words skipped
+	 */
+	private static Map<Integer, Set<String>> groupByLength(Collection<String> words, boolean check)
+	{
+		Map<Integer, Set<String>> wordsByLength = new HashMap<Integer, Set<String>>();
+		if (words == null)
+		{
+			return wordsByLength;
+		}
+		for (String word : words)
+		{
+			String normalized = word.trim().toLowerCase();
+			if (normalized.length() == 0)
+			{
+				continue;
+			}
+			if (check)
+			{
+				WordBucket.checkWord(normalized);
+			}
+			Set<String> group = wordsByLength.get(normalized.length());
+			if (group == null)
+			{
+				group = new LinkedHashSet<String>();
+				wordsByLength.put(normalized.length(), group);
+			}
+			group.add(normalized);
+		}
+		return wordsByLength;
+	}
+
+	/*
+	 * @param another version of the index
+	 * @return the word lengths whose words differ between the two versions
+	 */
+	public Set<Integer> getChangedLengths(DictionaryIndex other)
+	{
+		Set<Integer> lengths = new TreeSet<Integer>(indexesByLength.keySet());
+		lengths.addAll(other.indexesByLength.keySet());
+		Set<Integer> changed = new TreeSet<Integer>();
+		for (Integer length : lengths)
+		{
+			if (indexesByLength.get(length) != other.indexesByLength.get(length))
+			{
+				changed.add(length);
+			}
+		}
+		return changed;
+	}
+
+	/*
+	 * @return number of updates since the first version
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+	/*
+	 * @param length of the words
+	 * @param a bucket of some version of the index
+	 * @return true if the bucket is the built bucket of the length in this version
+	 */
+	public boolean isCurrent(int wordLength, WordBucket bucket)
+	{
+		LengthIndex index = indexesByLength.get(wordLength);
+		return index != null && index.bucket == bucket;
+	}
+
+	/*
+	 * @return the word lengths of the dictionary in ascending order, unmodifiable
+	 */
+	public SortedSet<Integer> getWordLengths()
+	{
+		return wordLengths;
+	}
+
+	/*
+	 * Build the bucket of the length if this is its first use
+	 * @param length of the words
+	 * @return the index of the length, null if the dictionary has no words of the length
+	 */
+	public WordBucket getBucket(int wordLength)
+	{
+		LengthIndex index = indexesByLength.get(wordLength);
+		if (index == null)
+		{
+			return null;
+		}
+		WordBucket bucket = index.bucket;
+		if (bucket != null)
+		{
+			return bucket;
+		}
+		index.demand.increment();
+		return build(index);
+	}
+
+	/*
+	 * @param index of a length
+	 * @return its bucket, built by this thread or by the thread that got there first
+	 */
+	private WordBucket build(LengthIndex index)
+	{
+		synchronized (index)
+		{
+			if (index.bucket == null)
+			{
+				long start = System.nanoTime();
+				index.bucket = (index.store != null) ? new WordBucket(index.store)
+						: new WordBucket(index.wordLength, index.words);
+				//The bucket holds its own packed copy of the words
+				index.words = null;
+				index.store = null;
+				buildNanos.add(System.nanoTime() - start);
+				numBuilt.incrementAndGet();
+			}
+			return index.bucket;
+		}
+	}
+
+	/*
+	 * Build every bucket that is not built yet on the calling thread.  The length requested
+	 * most often so far goes first, then the length with the most words, and the order is
+	 * chosen again after every build, so lengths that games start asking for are built next.
+	 */
+	public void prewarm()
+	{
+		while (true)
+		{
+			LengthIndex next = null;
+			for (LengthIndex index : indexesByLength.values())
+			{
+				if (index.bucket != null)
+				{
+					continue;
+				}
+				if (next == null || index.demand.sum() > next.demand.sum()
+						|| (index.demand.sum() == next.demand.sum() && index.numWords > next.numWords))
+				{
+					next = index;
+				}
+			}
+			if (next == null)
+			{
+				return;
+			}
+			build(next);
+		}
+	}
+
+	/*
+	 * Run prewarm on a background thread
+	 * @return the started daemon thread
+	 */
+	public Thread startPrewarm()
+	{
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				prewarm();
+			}
+		}, "index-prewarm");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/*
+	 * @return number of word lengths whose bucket is built
+	 */
+	public int getNumBuilt()
+	{
+		return numBuilt.get();
+	}
+
+	/*
+	 * @return time spent building buckets on first use or prewarm in milliseconds, not counting
+	 *         buckets that were built before the index was created
+	 */
+	public double getBuildMillis()
+	{
+		return buildNanos.sum() / 1000000.0;
+	}
+
+	/*
+	 * @param length of the words
+	 * @return number of dictionary words of the length
+	 */
+	public int getNumWords(int wordLength)
+	{
+		LengthIndex index = indexesByLength.get(wordLength);
+		return (index != null) ? index.numWords : 0;
+	}
+
+	/*
+	 * @param length of the words
+	 * @return all the dictionary words of the length in dictionary order, empty if there are none
+	 */
+	public String[] getWords(int wordLength)
+	{
+		WordBucket bucket = getBucket(wordLength);
+		String[] words = new String[(bucket != null) ? bucket.size() : 0];
+		for (int i = 0; i < words.length; i++)
+		{
+			words[i] = bucket.getWord(i);
+		}
+		return words;
+	}
+
+	/*
+	 * @return number of words of all lengths
+	 */
+	public int size()
+	{
+		int size = 0;
+		for (LengthIndex index : indexesByLength.values())
+		{
+			size += index.numWords;
+		}
+		return size;
+	}
+
+	/*
+	 * Get the word candidates of a game from the whole bucket of its length
+	 * @param current game state
+	 * @return the bucket indexes of the remaining possible matching words in dictionary order
+	 */
+	public int[] screen(GameState game)
+	{
+		return screen(game, getBucket(game.getSecretWordLength()));
+	}
+
+	/*
+	 * Get the word candidates of a game from a bucket of its length
+	 * @param current game state
+	 * @param bucket of the game's length from any version of the index, null for none
+	 * @return the bucket indexes of the remaining possible matching words in dictionary order
+	 */
+	public static int[] screen(GameState game, WordBucket bucket)
+	{
+		if (bucket == null)
+		{
+			return new int[0];
+		}
+		//Current game so far
+		char[] wordGuessedSoFar = new char[game.getSecretWordLength()];
+		game.copyGuessedSoFar(wordGuessedSoFar);
+		//Screen word candidates by guessed letters and previously guessed words
+		long[] survivors = bucket.screen(wordGuessedSoFar, game.getGuessedLetterMask(),
+				game.getIncorrectlyGuessedWords());
+		return WordBucket.toIndexes(survivors);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("version=%d, built=%d/%d, build=%.1fms", version, getNumBuilt(), indexesByLength.size(),
+				getBuildMillis());
+	}
+
+	/*
+	 * The words of one length and their bucket once it is built
+	 */
+	private static final class LengthIndex {
+		final int wordLength;
+		final int numWords;
+		//Number of times the bucket was asked for before it was built
+		final LongAdder demand = new LongAdder();
+
+		//The words to build from, one of the two, dropped once the bucket is built
+		List<String> words;
+		WordStore store;
+
+		volatile WordBucket bucket;
+
+		LengthIndex(int wordLength, List<String> words, WordStore store)
+		{
+			this.wordLength = wordLength;
+			this.numWords = (store != null) ? store.size() : words.size();
+			this.words = words;
+			this.store = store;
+		}
+
+		LengthIndex(WordBucket bucket)
+		{
+			this.wordLength = bucket.getWordLength();
+			this.numWords = bucket.size();
+			this.bucket = bucket;
+		}
+
+		/*
+		 * @return a modifiable copy of the words in dictionary order
+		 */
+		synchronized List<String> getWords()
+		{
+			List<String> copy = new ArrayList<String>(numWords);
+			if (words != null)
+			{
+				copy.addAll(words);
+			} else
+			{
+				for (int i = 0; i < numWords; i++)
+				{
+					copy.add((store != null) ? store.getWord(i) : bucket.getWord(i));
+				}
+			}
+			return copy;
+		}
+	}
+}
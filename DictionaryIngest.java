@@ -0,0 +1,392 @@
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Reads a text dictionary once and builds everything the console and the strategy need from it:
+ * the word list in file order, the words grouped by length, the letter counts of every length
+ * and the WordBucket index of every length.
+ * The pipeline runs in phases, each timed separately:
+ *   read   one bulk read of the whole file through a FileChannel
+ *   split  cut the bytes into chunks that end at line boundaries
+ *   parse  parse the chunks in parallel, each into its own words, length groups and letter counts
+ *   merge  join the chunk results in chunk order, so the words keep the order of the file
+ *   index  build the WordBucket of every length in parallel, longest bucket first, unless the
+ *          buckets are left to DictionaryIndex to build on first use
+ * Lines are trimmed, blank lines are skipped and words are lower cased, like FileScanner.
+ * A word with a character other than 'a' to 'z' or longer than ScoringScratch.MAX_WORD_LENGTH
+ * letters fails the load, see WordBucket.checkWord.
+ */
+public class DictionaryIngest {
+
+	//Number of chunks per thread, so a slow chunk does not hold up the whole parse
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	public static final String[] PHASES = { "read", "split", "parse", "merge", "index" };
+
+	private final List<String> words;
+	private final Map<Integer, List<String>> wordsByLength;
+	private final Map<Integer, int[]> letterCounts;
+	private final Map<Integer, WordBucket> buckets;
+	private final long[] phaseNanos;
+
+	private DictionaryIngest(List<String> words, Map<Integer, List<String>> wordsByLength,
+			Map<Integer, int[]> letterCounts, Map<Integer, WordBucket> buckets, long[] phaseNanos)
+	{
+		this.words = words;
+		this.wordsByLength = wordsByLength;
+		this.letterCounts = letterCounts;
+		this.buckets = buckets;
+		this.phaseNanos = phaseNanos;
+	}
+
+	/*
+	 * @return all the words in file order
+	 */
+	public List<String> getWords()
+	{
+		return words;
+	}
+
+	/*
+	 * @return the words of every length in file order, keyed by the word length
+	 */
+	public Map<Integer, List<String>> getWordsByLength()
+	{
+		return wordsByLength;
+	}
+
+	/*
+	 * @return for every word length, the number of times each letter 'a' to 'z' appears in its words
+	 */
+	public Map<Integer, int[]> getLetterCounts()
+	{
+		return letterCounts;
+	}
+
+	/*
+	 * @return the index of every word length, keyed by the word length, null when the index phase
+	 *         was skipped
+	 */
+	public Map<Integer, WordBucket> getBuckets()
+	{
+		return buckets;
+	}
+
+	/*
+	 * @param index into PHASES
+	 * @return the time spent in the phase in milliseconds
+	 */
+	public double getPhaseMillis(int phase)
+	{
+		return phaseNanos[phase] / 1000000.0;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		double total = 0;
+		for (int phase = 0; phase < PHASES.length; phase++)
+		{
+			sb.append(PHASES[phase]).append(String.format("=%.1fms, ", getPhaseMillis(phase)));
+			total += getPhaseMillis(phase);
+		}
+		sb.append(String.format("total=%.1fms, words=%d", total, words.size()));
+		return sb.toString();
+	}
+
+	/*
+	 * Read and index a text dictionary
+	 * @param file name
+	 * @param number of threads parsing and indexing
+	 * @return the ingested dictionary
+	 */
+	public static DictionaryIngest load(String fileName, int numThreads) throws IOException
+	{
+		return load(fileName, numThreads, true);
+	}
+
+	/*
+	 * Read a text dictionary
+	 * @param file name
+	 * @param number of threads parsing and indexing
+	 * @param false to skip the index phase and leave the buckets to be built on first use
+	 * @return the ingested dictionary
+	 */
+	public static DictionaryIngest load(String fileName, int numThreads, boolean index) throws IOException
+	{
+		long[] phaseNanos = new long[PHASES.length];
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, numThreads));
+		try
+		{
+			long start = System.nanoTime();
+			final byte[] bytes = readFully(fileName);
+			phaseNanos[0] = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int[] bounds = split(bytes, Math.max(1, numThreads) * CHUNKS_PER_THREAD);
+			phaseNanos[1] = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			List<Future<Chunk>> parsed = new ArrayList<Future<Chunk>>();
+			for (int c = 0; c + 1 < bounds.length; c++)
+			{
+				final int from = bounds[c];
+				final int to = bounds[c + 1];
+				parsed.add(pool.submit(new Callable<Chunk>() {
+					@Override
+					public Chunk call() throws UnsupportedEncodingException
+					{
+						return parse(bytes, from, to);
+					}
+				}));
+			}
+			List<Chunk> chunks = new ArrayList<Chunk>(parsed.size());
+			for (Future<Chunk> future : parsed)
+			{
+				chunks.add(future.get());
+			}
+			phaseNanos[2] = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			List<String> words = new ArrayList<String>();
+			Map<Integer, List<String>> wordsByLength = new TreeMap<Integer, List<String>>();
+			Map<Integer, int[]> letterCounts = new TreeMap<Integer, int[]>();
+			for (Chunk chunk : chunks)
+			{
+				words.addAll(chunk.words);
+				for (Map.Entry<Integer, List<String>> entry : chunk.wordsByLength.entrySet())
+				{
+					List<String> group = wordsByLength.get(entry.getKey());
+					if (group == null)
+					{
+						group = new ArrayList<String>();
+						wordsByLength.put(entry.getKey(), group);
+						letterCounts.put(entry.getKey(), new int[WordBucket.ALPHABET_SIZE]);
+					}
+					group.addAll(entry.getValue());
+					int[] counts = letterCounts.get(entry.getKey());
+					int[] chunkCounts = chunk.letterCounts.get(entry.getKey());
+					for (int letter = 0; letter < WordBucket.ALPHABET_SIZE; letter++)
+					{
+						counts[letter] += chunkCounts[letter];
+					}
+				}
+			}
+			phaseNanos[3] = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			Map<Integer, WordBucket> buckets = index ? index(wordsByLength, pool) : null;
+			phaseNanos[4] = System.nanoTime() - start;
+
+			return new DictionaryIngest(words, wordsByLength, letterCounts, buckets, phaseNanos);
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading " + fileName, e);
+		} catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Failed to read " + fileName + ": " + e.getCause().getMessage(),
+					e.getCause());
+		} finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	/*
+	 * @param file name
+	 * @return the whole content of the file
+	 */
+	private static byte[] readFully(String fileName) throws IOException
+	{
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		try
+		{
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+			{
+				throw new IOException("Dictionary file too large: " + fileName);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+			{
+				//Keep reading until the buffer is full or the file ends
+			}
+			return buffer.array();
+		} finally
+		{
+			channel.close();
+		}
+	}
+
+	/*
+	 * Cut the bytes into about numChunks ranges that each end after a line feed or at the end
+	 * @param file content
+	 * @param wanted number of chunks
+	 * @return the chunk boundaries, chunk c covers bounds[c] to bounds[c + 1]
+	 */
+	private static int[] split(byte[] bytes, int numChunks)
+	{
+		int[] bounds = new int[numChunks + 1];
+		int count = 1;
+		int step = Math.max(1, bytes.length / numChunks);
+		int position = 0;
+		while (position < bytes.length)
+		{
+			int end = Math.min(bytes.length, position + step);
+			while (end < bytes.length && bytes[end - 1] != '\n')
+			{
+				end++;
+			}
+			if (count == bounds.length)
+			{
+				bounds = Arrays.copyOf(bounds, bounds.length * 2);
+			}
+			bounds[count++] = end;
+			position = end;
+		}
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/*
+	 * Parse the lines of one chunk
+	 * @param file content
+	 * @param start of the chunk, at the beginning of a line
+	 * @param end of the chunk, after a line feed or at the end of the content
+	 * @return the words of the chunk
+	 */
+	private static Chunk parse(byte[] bytes, int from, int to) throws UnsupportedEncodingException
+	{
+		Chunk chunk = new Chunk();
+		int lineStart = from;
+		while (lineStart < to)
+		{
+			int lineEnd = lineStart;
+			while (lineEnd < to && bytes[lineEnd] != '\n')
+			{
+				lineEnd++;
+			}
+			//Trim white space and control characters such as the carriage return
+			int first = lineStart;
+			int last = lineEnd;
+			while (first < last && (bytes[first] & 0xff) <= ' ')
+			{
+				first++;
+			}
+			while (last > first && (bytes[last - 1] & 0xff) <= ' ')
+			{
+				last--;
+			}
+			if (last > first)
+			{
+				chunk.add(toLowerCaseWord(bytes, first, last));
+			}
+			lineStart = lineEnd + 1;
+		}
+		return chunk;
+	}
+
+	private static String toLowerCaseWord(byte[] bytes, int from, int to) throws UnsupportedEncodingException
+	{
+		char[] letters = new char[to - from];
+		for (int i = from; i < to; i++)
+		{
+			int b = bytes[i];
+			if (b < 0)
+			{
+				//Not ASCII, decode the line as a whole
+				return new String(bytes, from, to - from, "UTF-8").toLowerCase();
+			}
+			letters[i - from] = (b >= 'A' && b <= 'Z') ? (char) (b + ('a' - 'A')) : (char) b;
+		}
+		return new String(letters);
+	}
+
+	/*
+	 * Build the index of every length in parallel, longest bucket first
+	 * @param words of every length
+	 * @param pool to build on
+	 * @return the index of every length
+	 */
+	private static Map<Integer, WordBucket> index(final Map<Integer, List<String>> wordsByLength, ExecutorService pool)
+			throws InterruptedException, ExecutionException
+	{
+		List<Integer> lengths = new ArrayList<Integer>(wordsByLength.keySet());
+		Collections.sort(lengths, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b)
+			{
+				return wordsByLength.get(b).size() - wordsByLength.get(a).size();
+			}
+		});
+		Map<Integer, Future<WordBucket>> futures = new HashMap<Integer, Future<WordBucket>>();
+		for (final Integer length : lengths)
+		{
+			futures.put(length, pool.submit(new Callable<WordBucket>() {
+				@Override
+				public WordBucket call()
+				{
+					return new WordBucket(length, wordsByLength.get(length));
+				}
+			}));
+		}
+		Map<Integer, WordBucket> buckets = new HashMap<Integer, WordBucket>();
+		for (Map.Entry<Integer, Future<WordBucket>> entry : futures.entrySet())
+		{
+			buckets.put(entry.getKey(), entry.getValue().get());
+		}
+		return buckets;
+	}
+
+	/*
+	 * The words of one chunk of the file
+	 */
+	private static class Chunk {
+		final List<String> words = new ArrayList<String>();
+		final Map<Integer, List<String>> wordsByLength = new HashMap<Integer, List<String>>();
+		final Map<Integer, int[]> letterCounts = new HashMap<Integer, int[]>();
+
+		void add(String word)
+		{
+			//Reject a word scoring can not handle while reading, not when its length is first indexed
+			WordBucket.checkWord(word);
+			words.add(word);
+			Integer length = word.length();
+			List<String> group = wordsByLength.get(length);
+			if (group == null)
+			{
+				group = new ArrayList<String>();
+				wordsByLength.put(length, group);
+				letterCounts.put(length, new int[WordBucket.ALPHABET_SIZE]);
+			}
+			group.add(word);
+			int[] counts = letterCounts.get(length);
+			for (int i = 0; i < word.length(); i++)
+			{
+				int letter = word.charAt(i) - 'a';
+				if (letter >= 0 && letter < WordBucket.ALPHABET_SIZE)
+				{
+					counts[letter]++;
+				}
+			}
+		}
+	}
+}
@@ -29,6 +29,32 @@ public class Entropy {
 		return entropy;
 	}
 	
+	/*
+	 * Calcuate the entropy of all different reveal patterns of this alphabet.
+	 * Every pattern contributes the same term as its list of words in the hashTable version.
+	 * The terms are added from the smallest group to the largest, so the result only depends
+	 * on the group sizes and not on the order the words were counted in.  The hashTable version
+	 * adds them in the iteration order of its map instead, so the two can differ in the last
+	 * bit, and a tie between two letters may go the other way than it did there.
+	 * @param counter with the number of word candidates per reveal pattern of a single alphabet
+	 * @param total number of word candidates
+	 * @return shannon entropy for this alphabet
+	 */
+	public static double calculateEntropy(PatternCounter counter, int numEvents)
+	{
+		double entropy = 0;
+		
+		int[] groupSizes = counter.sortedCounts();
+		for (int i = 0; i < counter.size(); i++)
+		{
+			double mapKeyProbs = (double) groupSizes[i] / (double) numEvents;
+			entropy += (mapKeyProbs * log2(mapKeyProbs));
+		}
+		//convert to positive value 
+		entropy *= -1; 
+		return entropy;
+	}
+	
 	/*
 	 * Calculate the entropy of a single random selection from word candidates
 	 * There are two events with probability p and q where q=(1-p) since the sum of the probabilities adds up to 1
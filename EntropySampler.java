@@ -0,0 +1,388 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Picks the letter of the highest entropy of a large candidate set from a sample of the
+ * candidates instead of all of them.
+ * The sample is stratified over the candidates in dictionary order: the candidates are cut
+ * into as many equal strata as there are sample words, and one word is drawn from each, so
+ * the sample covers every part of the dictionary.  The entropy of every letter is estimated
+ * from the sample, with the variance of the estimate from the same counts.  The sample doubles
+ * until the best letter is ahead of the runner-up by the normal quantile of the confidence,
+ * measured in standard errors of their difference; every doubling draws a new stratified batch
+ * and counts it on top of the earlier ones.  A set the sample would have to grow past a quarter
+ * of to decide, or where a word guess could beat the letters, is left to the exact path.
+ * The draws are seeded from the candidate set, so the same set always gets the same sample
+ * and the decision does not depend on the thread or the games played before.
+ * Report: prints how often the sample picks the letter of the exact path, over the sets the
+ * sample decides, and the time of both for the large states of random games of every word
+ * length, from the empty board on.
+ * Arguments: [dictionary file] [-threshold n] [-confidence p] [-games n] [-seed n]
+ */
+public class EntropySampler {
+
+	//Smallest candidate set scored from a sample unless given
+	public static final int DEFAULT_THRESHOLD = 4096;
+	//Confidence that the sampled letter is the best unless given
+	public static final double DEFAULT_CONFIDENCE = 0.99;
+	//Words in the first sample
+	public static final int INITIAL_SAMPLE_SIZE = 512;
+	//Smallest threshold, a smaller set could not be sampled once before reaching a quarter of it
+	public static final int MIN_THRESHOLD = 4 * INITIAL_SAMPLE_SIZE;
+
+	//Passes of the report over its states, all but the first timed
+	private static final int PASSES = 11;
+	//Letters guessed at random after the opening letter of the report's games
+	private static final String COMMON_LETTERS = "ESIARNTOLCDU";
+
+	private final int threshold;
+	private final double confidence;
+	//Standard errors the best letter has to be ahead by
+	private final double minSeparation;
+
+	private final LongAdder decisions = new LongAdder();
+	private final LongAdder sampledWords = new LongAdder();
+	private final LongAdder exactDecisions = new LongAdder();
+
+	/*
+	 * @param smallest candidate set to sample, at least MIN_THRESHOLD
+	 * @param confidence that the sampled letter is the best, between 0.5 and 1
+	 */
+	public EntropySampler(int threshold, double confidence)
+	{
+		if (threshold < MIN_THRESHOLD)
+		{
+			throw new IllegalArgumentException("Threshold must be at least " + MIN_THRESHOLD + ": " + threshold);
+		}
+		if (confidence < 0.5 || confidence >= 1)
+		{
+			throw new IllegalArgumentException("Confidence must be at least 0.5 and below 1: " + confidence);
+		}
+		this.threshold = threshold;
+		this.confidence = confidence;
+		this.minSeparation = normalQuantile(confidence);
+	}
+
+	/*
+	 * @param number of word candidates
+	 * @return true if the set is scored from a sample
+	 */
+	public boolean applies(int numCandidates)
+	{
+		return numCandidates >= threshold;
+	}
+
+	/*
+	 * Pick the letter of the highest entropy from growing samples
+	 * @param positions of mystery letters
+	 * @param number of positions of mystery letters
+	 * @param letter codes of the bucket
+	 * @param length of the words
+	 * @param bucket indexes of the word candidates, in dictionary order
+	 * @param number of word candidates
+	 * @param buffers for scoring, used by the calling thread only
+	 * @return the letter (0 for 'a'), -1 to leave the decision to the exact path
+	 */
+	int chooseLetter(int[] emptyLetterPositions, int numEmpty, byte[] letters, int wordLength, int[] wordCandidates,
+			int numCandidates, ScoringScratch scratch)
+	{
+		decisions.increment();
+		Random random = scratch.getSampleRandom(numCandidates * 0x9E3779B97F4A7C15L + wordCandidates[0] * 31L
+				+ wordCandidates[numCandidates - 1]);
+		PatternCounter[] counters = scratch.getPatternCounters();
+		int[] matchedWords = scratch.getMatchedWords();
+		HangmanGuessingStrategy.clearPatternCounts(counters, matchedWords);
+		//Words of the sample without each letter, already added to its empty pattern
+		int[] unmatchedWords = scratch.getUnmatchedWords();
+		Arrays.fill(unmatchedWords, 0);
+		int letterCandidates = 0;
+		int sampleSize = 0;
+		for (int batchSize = INITIAL_SAMPLE_SIZE; 4 * (sampleSize + batchSize) <= numCandidates;
+				batchSize = sampleSize)
+		{
+			//Every batch is a stratified sample of its own, counted on top of the earlier ones
+			int[] sample = scratch.getSample(batchSize);
+			for (int i = 0; i < batchSize; i++)
+			{
+				int from = (int) ((long) i * numCandidates / batchSize);
+				int to = (int) ((long) (i + 1) * numCandidates / batchSize);
+				sample[i] = wordCandidates[from + random.nextInt(to - from)];
+			}
+			letterCandidates |= HangmanGuessingStrategy.countPatterns(emptyLetterPositions, numEmpty, letters,
+					wordLength, sample, 0, batchSize, scratch.getLetterMasks(), matchedWords, counters);
+			sampleSize += batchSize;
+			sampledWords.add(batchSize);
+			for (int letter = 0; letter < WordBucket.ALPHABET_SIZE; letter++)
+			{
+				int unmatched = sampleSize - matchedWords[letter];
+				if ((letterCandidates & (1 << letter)) != 0 && unmatched > unmatchedWords[letter])
+				{
+					counters[letter].add(0, unmatched - unmatchedWords[letter]);
+					unmatchedWords[letter] = unmatched;
+				}
+			}
+			scratch.setLettersScored(Integer.bitCount(letterCandidates));
+
+			int best = -1;
+			double bestEntropy = Double.NEGATIVE_INFINITY;
+			double bestVariance = 0;
+			double secondEntropy = Double.NEGATIVE_INFINITY;
+			double secondVariance = 0;
+			//Ties go to the earlier letter, as on the exact path
+			for (int letter = 0; letter < WordBucket.ALPHABET_SIZE; letter++)
+			{
+				if ((letterCandidates & (1 << letter)) == 0)
+				{
+					continue;
+				}
+				double entropy = Entropy.calculateEntropy(counters[letter], sampleSize);
+				double variance = variance(counters[letter], sampleSize, entropy);
+				if (entropy > bestEntropy)
+				{
+					secondEntropy = bestEntropy;
+					secondVariance = bestVariance;
+					bestEntropy = entropy;
+					bestVariance = variance;
+					best = letter;
+				} else if (entropy > secondEntropy)
+				{
+					secondEntropy = entropy;
+					secondVariance = variance;
+				}
+			}
+			if (best < 0 || bestEntropy <= Entropy.calculateRandomSelectEntropy(numCandidates))
+			{
+				break;
+			}
+			double gap = bestEntropy - secondEntropy;
+			if (gap > minSeparation * Math.sqrt(bestVariance + secondVariance))
+			{
+				scratch.setEntropy(bestEntropy);
+				return best;
+			}
+		}
+		exactDecisions.increment();
+		return -1;
+	}
+
+	/*
+	 * The variance of the entropy estimated from a sample, to first order:
+	 * (sum of p * log2(p)^2 - entropy^2) / sample size
+	 * @param pattern counts of the sample
+	 * @param sample size
+	 * @param the estimated entropy
+	 * @return the variance of the estimate
+	 */
+	static double variance(PatternCounter counter, int sampleSize, double entropy)
+	{
+		double moment = 0;
+		for (int i = 0; i < counter.size(); i++)
+		{
+			double p = (double) counter.countAt(i) / sampleSize;
+			double log = Entropy.log2(p);
+			moment += p * log * log;
+		}
+		return Math.max(0, moment - entropy * entropy) / sampleSize;
+	}
+
+	/*
+	 * The quantile of the standard normal distribution, by the rational approximation of
+	 * Abramowitz and Stegun 26.2.23 (absolute error below 4.5e-4)
+	 * @param probability between 0.5 and 1
+	 * @return the quantile
+	 */
+	static double normalQuantile(double probability)
+	{
+		double t = Math.sqrt(-2 * Math.log(1 - probability));
+		return t - (2.515517 + 0.802853 * t + 0.010328 * t * t)
+				/ (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+	}
+
+	public int getThreshold()
+	{
+		return threshold;
+	}
+
+	public double getConfidence()
+	{
+		return confidence;
+	}
+
+	/*
+	 * @return number of candidate sets sampled
+	 */
+	public long getDecisions()
+	{
+		return decisions.sum();
+	}
+
+	/*
+	 * @return number of sets the samples did not decide, decided on the exact path
+	 */
+	public long getExactDecisions()
+	{
+		return exactDecisions.sum();
+	}
+
+	@Override
+	public String toString()
+	{
+		long numDecisions = decisions.sum();
+		return String.format("threshold=%d, confidence=%.3f, decisions=%d, exact=%d, averageSample=%.0f", threshold,
+				confidence, numDecisions, exactDecisions.sum(),
+				(numDecisions > 0) ? (double) sampledWords.sum() / numDecisions : 0.0);
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		String wordListFileName = "words.txt";
+		int threshold = DEFAULT_THRESHOLD;
+		double confidence = DEFAULT_CONFIDENCE;
+		int numGames = 64;
+		long seed = 1;
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-threshold") && i + 1 < args.length)
+			{
+				threshold = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-confidence") && i + 1 < args.length)
+			{
+				confidence = Double.parseDouble(args[++i]);
+			} else if (args[i].equals("-games") && i + 1 < args.length)
+			{
+				numGames = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-seed") && i + 1 < args.length)
+			{
+				seed = Long.parseLong(args[++i]);
+			} else if (args[i].startsWith("-"))
+			{
+				System.out.println("Usage: java EntropySampler [words.txt] [-threshold n] [-confidence p] [-games n]"
+						+ " [-seed n]");
+				return;
+			} else
+			{
+				wordListFileName = args[i];
+			}
+		}
+
+		HangmanGameConsole console = new HangmanGameConsole(wordListFileName, seed);
+		DictionaryIngest dictionary = console.ingestWordList();
+		HangmanGuessingStrategy strategy = new HangmanGuessingStrategy(dictionary, null,
+				HangmanGuessingStrategy.DEFAULT_PARALLEL_THRESHOLD, null);
+		EntropySampler sampler = new EntropySampler(threshold, confidence);
+		ScoringScratch scratch = new ScoringScratch();
+		Random random = new Random(seed);
+
+		//Same letter is measured over the sets the sample decided, Sampled is their number
+		System.out.println("Length  States  Candidates  Same letter  Exact(us)  Sampled(us)  Speedup  Exact path"
+				+ "  Sampled");
+		for (int length : strategy.getWordLengths())
+		{
+			String[] bucketWords = strategy.getWords(length);
+			//The boards of the first guesses of random games, as long as they are large enough to sample
+			List<char[]> boards = new ArrayList<char[]>();
+			List<int[]> candidateSets = new ArrayList<int[]>();
+			Set<String> distinctStates = new HashSet<String>();
+			for (int g = 0; g < numGames; g++)
+			{
+				HangmanGame game = new HangmanGame(bucketWords[random.nextInt(bucketWords.length)], 5);
+				//The empty board, the console's opening letter, or up to two more common letters,
+				//so the games reach more of the large states
+				int numOpening = random.nextInt(4) - 1;
+				if (numOpening >= 0)
+				{
+					new GuessLetter(console.getOpeningLetter(length)).makeGuess(game);
+				}
+				for (int i = 0; i < numOpening && game.gameStatus() == HangmanGame.Status.KEEP_GUESSING; i++)
+				{
+					new GuessLetter(COMMON_LETTERS.charAt(random.nextInt(COMMON_LETTERS.length()))).makeGuess(game);
+				}
+				while (game.gameStatus() == HangmanGame.Status.KEEP_GUESSING)
+				{
+					int[] wordCandidates = strategy.screenWordCandidates(game);
+					if (!sampler.applies(wordCandidates.length))
+					{
+						break;
+					}
+					char[] board = game.getGuessedSoFar().toCharArray();
+					//Games of the same word length often share their first states, measure each once
+					if (distinctStates.add(game.getGuessedSoFar() + game.getGuessedLetterMask()))
+					{
+						boards.add(board);
+						candidateSets.add(wordCandidates);
+					}
+					strategy.decide(board, strategy.getBucket(length), wordCandidates, wordCandidates.length, scratch)
+							.toGuess(random).makeGuess(game);
+				}
+			}
+			if (boards.isEmpty())
+			{
+				continue;
+			}
+
+			WordBucket bucket = strategy.getBucket(length);
+			int[] emptyLetterPositions = new int[length];
+			int same = 0;
+			int numSampled = 0;
+			long numCandidates = 0;
+			long exactNanos = 0;
+			long sampledNanos = 0;
+			long exactBefore = sampler.getExactDecisions();
+			//Warm up both paths in the first pass
+			for (int pass = 0; pass < PASSES; pass++)
+			{
+				for (int s = 0; s < boards.size(); s++)
+				{
+					char[] board = boards.get(s);
+					int[] wordCandidates = candidateSets.get(s);
+					int numEmpty = 0;
+					for (int i = 0; i < length; i++)
+					{
+						if (board[i] == HangmanGame.MYSTERY_LETTER)
+						{
+							emptyLetterPositions[numEmpty++] = i;
+						}
+					}
+					long start = System.nanoTime();
+					DecisionCache.Decision exact = strategy.decide(board, bucket, wordCandidates, wordCandidates.length,
+							scratch);
+					long middle = System.nanoTime();
+					int letter = sampler.chooseLetter(emptyLetterPositions, numEmpty, bucket.getLetterCodes(), length,
+							wordCandidates, wordCandidates.length, scratch);
+					if (letter < 0)
+					{
+						strategy.decide(board, bucket, wordCandidates, wordCandidates.length, scratch);
+					}
+					long end = System.nanoTime();
+					if (pass > 0)
+					{
+						exactNanos += middle - start;
+						sampledNanos += end - middle;
+						numCandidates += wordCandidates.length;
+						if (letter >= 0)
+						{
+							numSampled++;
+							if (exact.isLetter() && exact.getLetter() == 'a' + letter)
+							{
+								same++;
+							}
+						}
+					}
+				}
+			}
+			int numStates = boards.size();
+			int numTimed = (PASSES - 1) * numStates;
+			System.out.printf("%6d  %6d  %10d  %10.1f%%  %9.1f  %11.1f  %6.2fx  %9.1f%%  %7d%n", length, numStates,
+					numCandidates / numTimed, 100.0 * same / Math.max(1, numSampled), exactNanos / 1000.0 / numTimed,
+					sampledNanos / 1000.0 / numTimed, (double) exactNanos / Math.max(1, sampledNanos),
+					100.0 * (sampler.getExactDecisions() - exactBefore) / (PASSES * numStates), numSampled);
+		}
+		System.out.println("Sampler: " + sampler);
+	}
+}
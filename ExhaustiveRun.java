@@ -0,0 +1,423 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Plays every dictionary word exactly once and aggregates the results per word length.
+ * The words are streamed from the length buckets in chunks of consecutive words, and the
+ * chunks are played on a pool of threads.  Every game gets a random source seeded from the
+ * run seed, the word length and the word's index in its bucket, so a game plays the same way
+ * whichever thread runs it and in whatever order.  The totals of a length are the sums of its
+ * chunks, so they do not depend on the order either.
+ * Finished chunks are written to a checkpoint file periodically and at the end.  A run started
+ * with an existing checkpoint of the same dictionary (by checksum), seed, chunk size, number of
+ * guesses, opening book and game strategy skips the chunks already in it, so an interrupted run
+ * resumes where the last checkpoint was.
+ */
+public class ExhaustiveRun {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+	private static final String CHECKPOINT_HEADER = "# hangman exhaustive checkpoint v1";
+
+	private final HangmanGameConsole console;
+	private final HangmanGuessingStrategy strategy;
+	private final GuessingStrategy gameStrategy;
+	private final int maxGuesses;
+	private final long seed;
+	private final int chunkSize;
+	private final ResultSink resultSink;
+
+	//Finished chunks keyed by chunkKey
+	private final Map<String, ChunkResult> finished = new ConcurrentHashMap<String, ChunkResult>();
+
+	/*
+	 * @param console playing the games, with its opening letters ranked
+	 * @param the strategy holding the dictionary
+	 * @param strategy answering every guess instead of the strategy's sessions, such as the decision
+	 *        trees, null if off
+	 * @param maximum number of wrong guesses per game
+	 * @param seed of the games
+	 * @param number of words per chunk
+	 * @param thread-safe sink receiving the record of every game as it finishes, null for none
+	 */
+	public ExhaustiveRun(HangmanGameConsole console, HangmanGuessingStrategy strategy, GuessingStrategy gameStrategy,
+			int maxGuesses, long seed, int chunkSize, ResultSink resultSink)
+	{
+		this.console = console;
+		this.strategy = strategy;
+		this.gameStrategy = gameStrategy;
+		this.maxGuesses = maxGuesses;
+		this.seed = seed;
+		this.chunkSize = chunkSize;
+		this.resultSink = resultSink;
+	}
+
+	/*
+	 * Play all the words not in the checkpoint yet
+	 * @param number of threads
+	 * @param checkpoint file, read first when it exists, null for no checkpoints
+	 * @param seconds between checkpoints
+	 * @return the totals of every word length
+	 */
+	public Map<Integer, ChunkResult> run(int numThreads, final String checkpointFileName, long checkpointSeconds)
+			throws IOException, InterruptedException
+	{
+		if (checkpointFileName != null && new File(checkpointFileName).exists())
+		{
+			readCheckpoint(checkpointFileName);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, numThreads));
+		ScheduledExecutorService checkpointer = null;
+		Thread shutdownHook = null;
+		try
+		{
+			if (checkpointFileName != null)
+			{
+				checkpointer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable, "checkpoint-writer");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				checkpointer.scheduleWithFixedDelay(new Runnable() {
+					@Override
+					public void run()
+					{
+						writeCheckpointQuietly(checkpointFileName);
+					}
+				}, checkpointSeconds, checkpointSeconds, TimeUnit.SECONDS);
+				//Keep the finished chunks when the run is interrupted
+				shutdownHook = new Thread(new Runnable() {
+					@Override
+					public void run()
+					{
+						writeCheckpointQuietly(checkpointFileName);
+					}
+				});
+				Runtime.getRuntime().addShutdownHook(shutdownHook);
+			}
+
+			List<Future<ChunkResult>> futures = new ArrayList<Future<ChunkResult>>();
+			long firstGameNumber = 1;
+			for (final int length : strategy.getWordLengths())
+			{
+				final WordBucket bucket = strategy.getBucket(length);
+				final long bucketGameNumber = firstGameNumber;
+				firstGameNumber += bucket.size();
+				for (int from = 0; from < bucket.size(); from += chunkSize)
+				{
+					final int chunkFrom = from;
+					final int chunkTo = Math.min(bucket.size(), from + chunkSize);
+					if (finished.containsKey(chunkKey(length, chunkFrom)))
+					{
+						continue;
+					}
+					futures.add(pool.submit(new Callable<ChunkResult>() {
+						@Override
+						public ChunkResult call() throws IOException
+						{
+							ChunkResult result = playChunk(bucket, chunkFrom, chunkTo, bucketGameNumber);
+							finished.put(chunkKey(length, chunkFrom), result);
+							return result;
+						}
+					}));
+				}
+			}
+			for (Future<ChunkResult> future : futures)
+			{
+				future.get();
+			}
+		} catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof IOException)
+			{
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException("Game failed", e.getCause());
+		} finally
+		{
+			pool.shutdownNow();
+			if (checkpointer != null)
+			{
+				checkpointer.shutdownNow();
+				checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+			}
+			if (shutdownHook != null)
+			{
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+				writeCheckpoint(checkpointFileName);
+			}
+		}
+		return totals();
+	}
+
+	/*
+	 * @return the sum of the finished chunks of every word length
+	 */
+	public Map<Integer, ChunkResult> totals()
+	{
+		Map<Integer, ChunkResult> totals = new TreeMap<Integer, ChunkResult>();
+		for (ChunkResult chunk : finished.values())
+		{
+			ChunkResult total = totals.get(chunk.wordLength);
+			if (total == null)
+			{
+				total = new ChunkResult(chunk.wordLength, 0, 0);
+				totals.put(chunk.wordLength, total);
+			}
+			total.add(chunk);
+		}
+		return totals;
+	}
+
+	/*
+	 * @param run seed
+	 * @param word length
+	 * @param index of the word in its bucket
+	 * @return the seed of the word's game
+	 */
+	public static long gameSeed(long seed, int wordLength, int index)
+	{
+		//SplitMix64 finalizer over the three values
+		long z = seed + 0x9E3779B97F4A7C15L * (((long) wordLength << 32) + index + 1);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/*
+	 * @param bucket of the chunk
+	 * @param index of the first word of the chunk
+	 * @param index after the last word of the chunk
+	 * @param game number of the first word of the bucket, games are numbered in dictionary order
+	 * @return the totals of the chunk
+	 */
+	private ChunkResult playChunk(WordBucket bucket, int from, int to, long bucketGameNumber) throws IOException
+	{
+		int length = bucket.getWordLength();
+		ChunkResult result = new ChunkResult(length, from, to);
+		for (int index = from; index < to; index++)
+		{
+			GameRecord record = console.playGame(bucketGameNumber + index, bucket.getWord(index), maxGuesses,
+					strategy, gameStrategy, gameSeed(seed, length, index));
+			result.nanos += record.getLatencyNanos();
+			result.games++;
+			if (record.getStatus() == HangmanGame.Status.GAME_WON)
+			{
+				result.won++;
+			}
+			result.score += record.getScore();
+			if (resultSink != null)
+			{
+				resultSink.write(record);
+			}
+		}
+		return result;
+	}
+
+	private static String chunkKey(int wordLength, int from)
+	{
+		return wordLength + ":" + from;
+	}
+
+	/*
+	 * @return true if guesses are searched ahead, which changes the games of the run
+	 */
+	private boolean containsLookahead()
+	{
+		return gameStrategy instanceof LookaheadGuessingStrategy || (gameStrategy instanceof DecisionTreeStrategy
+				&& ((DecisionTreeStrategy) gameStrategy).getFallback() instanceof LookaheadGuessingStrategy);
+	}
+
+	/*
+	 * @return the line identifying the run, a checkpoint is only resumed by the same run
+	 */
+	private String runLine()
+	{
+		OpeningBook book = strategy.getOpeningBook();
+		return "run seed=" + seed + " dictionary=" + Long.toHexString(strategy.getChecksum()) + " chunkSize="
+				+ chunkSize + " maxGuesses=" + maxGuesses + " trees=" + (gameStrategy instanceof DecisionTreeStrategy)
+				+ " book=" + ((book != null) ? book.getDepth() + ":" + Long.toHexString(book.getChecksum()) : "off")
+				+ (containsLookahead() ? " lookahead=true" : "");
+	}
+
+	private void readCheckpoint(String fileName) throws IOException
+	{
+		BufferedReader in = new BufferedReader(new FileReader(fileName));
+		try
+		{
+			String header = in.readLine();
+			String run = in.readLine();
+			if (!CHECKPOINT_HEADER.equals(header))
+			{
+				throw new IOException("Not a checkpoint file: " + fileName);
+			}
+			if (!runLine().equals(run))
+			{
+				throw new IllegalStateException("Checkpoint " + fileName + " belongs to another run: " + run);
+			}
+			String line;
+			while ((line = in.readLine()) != null)
+			{
+				if (line.length() == 0)
+				{
+					continue;
+				}
+				String[] fields = line.split(" ");
+				if (fields.length != 8 || !fields[0].equals("chunk"))
+				{
+					throw new IOException("Corrupt checkpoint line: " + line);
+				}
+				ChunkResult chunk = new ChunkResult(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+						Integer.parseInt(fields[3]));
+				chunk.games = Long.parseLong(fields[4]);
+				chunk.won = Long.parseLong(fields[5]);
+				chunk.score = Long.parseLong(fields[6]);
+				chunk.nanos = Long.parseLong(fields[7]);
+				finished.put(chunkKey(chunk.wordLength, chunk.from), chunk);
+			}
+		} finally
+		{
+			in.close();
+		}
+	}
+
+	/*
+	 * Write the finished chunks to a temporary file and rename it over the checkpoint
+	 * @param checkpoint file
+	 */
+	private synchronized void writeCheckpoint(String fileName) throws IOException
+	{
+		File target = new File(fileName);
+		File temp = new File(fileName + ".tmp");
+		PrintWriter out = new PrintWriter(new FileWriter(temp));
+		try
+		{
+			out.println(CHECKPOINT_HEADER);
+			out.println(runLine());
+			for (ChunkResult chunk : new ArrayList<ChunkResult>(finished.values()))
+			{
+				out.println("chunk " + chunk.wordLength + " " + chunk.from + " " + chunk.to + " " + chunk.games + " "
+						+ chunk.won + " " + chunk.score + " " + chunk.nanos);
+			}
+		} finally
+		{
+			out.close();
+		}
+		if (out.checkError())
+		{
+			throw new IOException("Failed to write " + temp);
+		}
+		if (!temp.renameTo(target))
+		{
+			target.delete();
+			if (!temp.renameTo(target))
+			{
+				throw new IOException("Failed to rename " + temp + " to " + target);
+			}
+		}
+	}
+
+	private void writeCheckpointQuietly(String fileName)
+	{
+		try
+		{
+			writeCheckpoint(fileName);
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/*
+	 * Print the totals of every word length
+	 * @param totals returned by run
+	 * @param stream to print to
+	 */
+	public static void printTotals(Map<Integer, ChunkResult> totals, PrintStream out)
+	{
+		out.println("Length    Games      Won     Lost      Score  Avg Score  Play(sec)  us/game");
+		for (ChunkResult total : totals.values())
+		{
+			out.printf("%6d %8d %8d %8d %10d %10.3f %10.2f %8.1f%n", total.wordLength, total.games, total.won,
+					total.games - total.won, total.score, (double) total.score / total.games, total.nanos / 1e9,
+					total.nanos / 1e3 / total.games);
+		}
+	}
+
+	/*
+	 * The results of the games of one chunk, or the sum of several chunks of a length
+	 */
+	public static class ChunkResult {
+		final int wordLength;
+		final int from;
+		final int to;
+		long games;
+		long won;
+		long score;
+		//Time spent playing the games, summed over the games
+		long nanos;
+
+		ChunkResult(int wordLength, int from, int to)
+		{
+			this.wordLength = wordLength;
+			this.from = from;
+			this.to = to;
+		}
+
+		void add(ChunkResult other)
+		{
+			games += other.games;
+			won += other.won;
+			score += other.score;
+			nanos += other.nanos;
+		}
+
+		public int getWordLength()
+		{
+			return wordLength;
+		}
+
+		public long getGames()
+		{
+			return games;
+		}
+
+		public long getWon()
+		{
+			return won;
+		}
+
+		public long getScore()
+		{
+			return score;
+		}
+
+		public long getNanos()
+		{
+			return nanos;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * The outcome of one finished game, as written to a ResultSink
+ */
+public class GameRecord {
+
+	private final long gameNumber;
+	private final String secretWord;
+	private final String finalPattern;
+	private final int score;
+	private final HangmanGame.Status status;
+	private final List<String> guesses;
+	private final long latencyNanos;
+
+	/*
+	 * @param position of the game in the run, starting at 1
+	 * @param secret word (upper case)
+	 * @param the game board at the end of the game
+	 * @param score of the game
+	 * @param status at the end of the game
+	 * @param the guesses in the order they were made, a letter or a word each (upper case)
+	 * @param time spent playing the game in nanoseconds
+	 */
+	public GameRecord(long gameNumber, String secretWord, String finalPattern, int score, HangmanGame.Status status,
+			List<String> guesses, long latencyNanos)
+	{
+		this.gameNumber = gameNumber;
+		this.secretWord = secretWord;
+		this.finalPattern = finalPattern;
+		this.score = score;
+		this.status = status;
+		this.guesses = Collections.unmodifiableList(guesses);
+		this.latencyNanos = latencyNanos;
+	}
+
+	public long getGameNumber()
+	{
+		return gameNumber;
+	}
+
+	public String getSecretWord()
+	{
+		return secretWord;
+	}
+
+	public String getFinalPattern()
+	{
+		return finalPattern;
+	}
+
+	public int getScore()
+	{
+		return score;
+	}
+
+	public HangmanGame.Status getStatus()
+	{
+		return status;
+	}
+
+	public List<String> getGuesses()
+	{
+		return guesses;
+	}
+
+	public long getLatencyNanos()
+	{
+		return latencyNanos;
+	}
+}
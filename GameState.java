@@ -0,0 +1,45 @@
+import java.util.Set;
+
+/**
+ * The state of a Hangman game as seen by a guessing strategy: the board and the guesses made,
+ * without the secret word. HangmanGame is one; HangmanServer builds them from client requests.
+ */
+public interface GameState {
+  /**
+   * @return The length of the secret word
+   */
+  int getSecretWordLength();
+
+  /**
+   * @return The string representation of the current game state
+   * (which will contain MYSTERY_LETTER in place of unknown letters)
+   */
+  String getGuessedSoFar();
+
+  /**
+   * @param position A position in the secret word
+   * @return The letter at the position (upper case), or MYSTERY_LETTER when it is unknown
+   */
+  char getGuessedSoFarAt(int position);
+
+  /**
+   * Copy the current game state without allocating
+   * @param board Receives getGuessedSoFar() in its first getSecretWordLength() slots
+   */
+  void copyGuessedSoFar(char[] board);
+
+  /**
+   * @return Mask of all guessed letters 'A' to 'Z', see HangmanGame.letterBit
+   */
+  int getGuessedLetterMask();
+
+  /**
+   * @return Number of distinct incorrect word guesses so far
+   */
+  int getNumIncorrectlyGuessedWords();
+
+  /**
+   * @return Set of all incorrectly guessed words so far (upper case), in guessing order
+   */
+  Set<String> getIncorrectlyGuessedWords();
+}
@@ -13,6 +13,13 @@ public class GuessLetter implements Guess {
     game.guessLetter(guess);
   }
 
+  /**
+   * @return The guessed letter
+   */
+  public char getLetter() {
+    return guess;
+  }
+
   @Override
   public String toString() {
     return "GuessLetter[" + guess + "]";
@@ -13,6 +13,13 @@ public class GuessWord implements Guess {
     game.guessWord(guess);
   }
 
+  /**
+   * @return The guessed word
+   */
+  public String getWord() {
+    return guess;
+  }
+
   @Override
   public String toString() {
     return "GuessWord[" + guess + "]";
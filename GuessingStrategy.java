@@ -1,7 +1,23 @@
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A strategy for generating guesses given the current state of a Hangman game.
  */
 public interface GuessingStrategy {
   Guess nextGuess(HangmanGame game);
   
+  /**
+   * Guess for many games at once. Strategies that can share work between games in the same
+   * state override this; by default every game is guessed on its own.
+   * @param games The games to guess for
+   * @return The guess of every game in input order, null where nextGuess would return null
+   */
+  default List<Guess> nextGuesses(List<? extends HangmanGame> games) {
+    List<Guess> guesses = new ArrayList<Guess>(games.size());
+    for (HangmanGame game : games) {
+      guesses.add(nextGuess(game));
+    }
+    return guesses;
+  }
 }
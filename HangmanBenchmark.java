@@ -0,0 +1,370 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Micro benchmarks of every stage of the guessing hot path, measured separately so that
+ * dictionary loading, JIT warm-up and console output do not blur the numbers:
+ *   load       FileScanner.readLinesFromFile of the dictionary
+ *   ingest     DictionaryIngest of the dictionary on one thread
+ *   index      building the strategy, which groups and indexes the words by length
+ *   screen     screenWordCandidates of a game state
+ *   count      countPatterns of the candidates of a game state, the successor of buildFrequencyMap
+ *   entropy    Entropy.calculateEntropy of the pattern counts of every letter of a game state
+ *   state      the HangmanGame bookkeeping of a game guessing letters in a fixed order, no strategy
+ *   guess-N    a full nextGuess, screening included, after the opening letter and N more guesses
+ *   game-L     a complete game of a word of length L
+ * The fixtures are built from fixed seeds, so the same dictionary always benchmarks the same
+ * games and states.  Each benchmark runs warm-up iterations first, then measured iterations of
+ * a fixed duration.  Throughput is reported in operations per second and allocation in bytes
+ * per operation, read from the allocation counter of the benchmark thread.
+ * Arguments: [dictionary file] [-warmup n] [-iterations n] [-time ms] [-seed n] [name prefix]
+ */
+public class HangmanBenchmark {
+
+	private static final int NUM_STATES = 64;
+	private static final int NUM_GAME_WORDS = 32;
+	private static final int[] GAME_LENGTHS = { 4, 8, 12 };
+	private static final int MAX_GUESSES = 5;
+	private static final String LETTERS_BY_FREQUENCY = "ESIARNTOLCDUPMGHBYFVKWZXQJ";
+
+	//Results of the operations, so they can not be optimized away
+	private static volatile long sink;
+
+	/*
+	 * One benchmarked operation
+	 */
+	private static abstract class Benchmark {
+		final String name;
+
+		Benchmark(String name)
+		{
+			this.name = name;
+		}
+
+		/*
+		 * Run the operation once
+		 * @return any value derived from the result
+		 */
+		abstract long run() throws Exception;
+	}
+
+	private final String wordListFileName;
+	private final long seed;
+	private HangmanGameConsole console;
+	private HangmanGuessingStrategy strategy;
+	private List<String> words;
+
+	public HangmanBenchmark(String wordListFileName, long seed)
+	{
+		this.wordListFileName = wordListFileName;
+		this.seed = seed;
+	}
+
+	/*
+	 * Read the dictionary once for the fixtures
+	 */
+	private void setUp() throws IOException
+	{
+		console = new HangmanGameConsole(wordListFileName, seed);
+		console.setIngestThreads(1);
+		DictionaryIngest dictionary = console.ingestWordList();
+		words = dictionary.getWords();
+		strategy = new HangmanGuessingStrategy(dictionary, null, HangmanGuessingStrategy.DEFAULT_PARALLEL_THRESHOLD,
+				null);
+	}
+
+	/*
+	 * Play the opening letter and a number of strategy guesses on random words
+	 * @param number of strategy guesses after the opening letter
+	 * @return games still going after the guesses
+	 */
+	private List<HangmanGame> gameStates(int numGuesses)
+	{
+		Random random = new Random(seed + numGuesses);
+		List<HangmanGame> games = new ArrayList<HangmanGame>();
+		while (games.size() < NUM_STATES)
+		{
+			HangmanGame game = new HangmanGame(words.get(random.nextInt(words.size())), MAX_GUESSES);
+			new GuessLetter(console.getOpeningLetter(game.getSecretWordLength())).makeGuess(game);
+			CandidateSession session = strategy.newSession(game, new Random(random.nextLong()));
+			for (int i = 0; i < numGuesses && game.gameStatus() == HangmanGame.Status.KEEP_GUESSING; i++)
+			{
+				session.nextGuess(game).makeGuess(game);
+			}
+			if (game.gameStatus() == HangmanGame.Status.KEEP_GUESSING)
+			{
+				games.add(game);
+			}
+		}
+		return games;
+	}
+
+	/*
+	 * @param length of the words
+	 * @return random dictionary words of the length
+	 */
+	private List<String> gameWords(int wordLength)
+	{
+		String[] bucket = strategy.getWords(wordLength);
+		Random random = new Random(seed * 31 + wordLength);
+		List<String> gameWords = new ArrayList<String>();
+		for (int i = 0; i < NUM_GAME_WORDS; i++)
+		{
+			gameWords.add(bucket[random.nextInt(bucket.length)]);
+		}
+		return gameWords;
+	}
+
+	private List<Benchmark> createBenchmarks()
+	{
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new Benchmark("load") {
+			@Override
+			long run() throws IOException
+			{
+				return FileScanner.readLinesFromFile(wordListFileName).size();
+			}
+		});
+		benchmarks.add(new Benchmark("ingest") {
+			@Override
+			long run() throws IOException
+			{
+				return DictionaryIngest.load(wordListFileName, 1).getWords().size();
+			}
+		});
+		benchmarks.add(new Benchmark("index") {
+			@Override
+			long run()
+			{
+				return new HangmanGuessingStrategy(words).getWordLengths().size();
+			}
+		});
+
+		final List<HangmanGame> states = gameStates(0);
+		final int[][] candidates = new int[states.size()][];
+		for (int s = 0; s < states.size(); s++)
+		{
+			candidates[s] = strategy.screenWordCandidates(states.get(s));
+		}
+		benchmarks.add(new Benchmark("screen") {
+			private int next;
+
+			@Override
+			long run()
+			{
+				HangmanGame game = states.get(next++ % states.size());
+				return strategy.screenWordCandidates(game).length;
+			}
+		});
+		final ScoringScratch scratch = new ScoringScratch();
+		benchmarks.add(new Benchmark("count") {
+			private int next;
+
+			@Override
+			long run()
+			{
+				int s = next++ % states.size();
+				return countPatterns(states.get(s), candidates[s], scratch);
+			}
+		});
+		final PatternCounter[][] counts = new PatternCounter[states.size()][WordBucket.ALPHABET_SIZE];
+		for (int s = 0; s < states.size(); s++)
+		{
+			countPatterns(states.get(s), candidates[s], scratch);
+			for (int letter = 0; letter < WordBucket.ALPHABET_SIZE; letter++)
+			{
+				PatternCounter source = scratch.getPatternCounters()[letter];
+				counts[s][letter] = new PatternCounter();
+				for (int i = 0; i < source.size(); i++)
+				{
+					counts[s][letter].add(source.patternAt(i), source.countAt(i));
+				}
+			}
+		}
+		benchmarks.add(new Benchmark("entropy") {
+			private int next;
+
+			@Override
+			long run()
+			{
+				int s = next++ % states.size();
+				double total = 0;
+				for (PatternCounter counter : counts[s])
+				{
+					if (counter.size() > 0)
+					{
+						total += Entropy.calculateEntropy(counter, candidates[s].length);
+					}
+				}
+				return Double.doubleToLongBits(total);
+			}
+		});
+
+		final List<String> stateWords = gameWords(GAME_LENGTHS[1]);
+		benchmarks.add(new Benchmark("state") {
+			private int next;
+
+			@Override
+			long run()
+			{
+				HangmanGame game = new HangmanGame(stateWords.get(next++ % stateWords.size()), MAX_GUESSES);
+				for (int i = 0; game.gameStatus() == HangmanGame.Status.KEEP_GUESSING; i++)
+				{
+					game.guessLetter(LETTERS_BY_FREQUENCY.charAt(i));
+				}
+				return game.currentScore() + game.getGuessedLetterMask();
+			}
+		});
+
+		for (int stage = 0; stage < 3; stage++)
+		{
+			final List<HangmanGame> stageStates = (stage == 0) ? states : gameStates(stage);
+			benchmarks.add(new Benchmark("guess-" + stage) {
+				private int next;
+				private final Random random = new Random(seed);
+
+				@Override
+				long run()
+				{
+					HangmanGame game = stageStates.get(next++ % stageStates.size());
+					return strategy.newSession(game, random).nextGuess(game).hashCode();
+				}
+			});
+		}
+
+		for (final int length : GAME_LENGTHS)
+		{
+			final List<String> gameWords = gameWords(length);
+			benchmarks.add(new Benchmark("game-" + length) {
+				private int next;
+
+				@Override
+				long run()
+				{
+					int index = next++ % gameWords.size();
+					HangmanGame game = new HangmanGame(gameWords.get(index), MAX_GUESSES);
+					return console.run(game, strategy.newSession(game, new Random(seed + index)));
+				}
+			});
+		}
+		return benchmarks;
+	}
+
+	/*
+	 * Count the reveal patterns of the candidates of a game state into the scratch counters
+	 * @return bitmask of the letters found
+	 */
+	private int countPatterns(HangmanGame game, int[] wordCandidates, ScoringScratch scratch)
+	{
+		char[] wordGuessedSoFar = new char[game.getSecretWordLength()];
+		game.copyGuessedSoFar(wordGuessedSoFar);
+		int[] emptyLetterPositions = scratch.getEmptyLetterPositions();
+		int numEmpty = 0;
+		for (int i = 0; i < wordGuessedSoFar.length; i++)
+		{
+			if (wordGuessedSoFar[i] == HangmanGame.MYSTERY_LETTER)
+			{
+				emptyLetterPositions[numEmpty++] = i;
+			}
+		}
+		HangmanGuessingStrategy.clearPatternCounts(scratch.getPatternCounters(), scratch.getMatchedWords());
+		return HangmanGuessingStrategy.countPatterns(emptyLetterPositions, numEmpty,
+				strategy.getBucket(wordGuessedSoFar.length).getLetterCodes(), wordGuessedSoFar.length, wordCandidates,
+				0, wordCandidates.length, scratch.getLetterMasks(), scratch.getMatchedWords(),
+				scratch.getPatternCounters());
+	}
+
+	/*
+	 * Run one iteration of a benchmark
+	 * @return operations per second and bytes allocated per operation
+	 */
+	private static double[] iterate(Benchmark benchmark, long millis) throws Exception
+	{
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long result = 0;
+		long ops = 0;
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		long deadline = start + millis * 1000000L;
+		long now;
+		do
+		{
+			result += benchmark.run();
+			ops++;
+			now = System.nanoTime();
+		} while (now < deadline);
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		sink += result;
+		return new double[] { ops * 1e9 / (now - start), (double) allocated / ops };
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		String wordListFileName = "words.txt";
+		int warmupIterations = 3;
+		int iterations = 5;
+		long millis = 1000;
+		long seed = 42;
+		String filter = "";
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-warmup"))
+			{
+				warmupIterations = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-iterations"))
+			{
+				iterations = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-time"))
+			{
+				millis = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-seed"))
+			{
+				seed = Long.parseLong(args[++i]);
+			} else if (args[i].endsWith(".txt"))
+			{
+				wordListFileName = args[i];
+			} else
+			{
+				filter = args[i];
+			}
+		}
+
+		HangmanBenchmark suite = new HangmanBenchmark(wordListFileName, seed);
+		suite.setUp();
+		System.out.printf("%-10s %14s %12s %14s%n", "Benchmark", "ops/s", "error", "B/op");
+		for (Benchmark benchmark : suite.createBenchmarks())
+		{
+			if (!benchmark.name.startsWith(filter))
+			{
+				continue;
+			}
+			for (int i = 0; i < warmupIterations; i++)
+			{
+				iterate(benchmark, millis);
+			}
+			double[] throughput = new double[iterations];
+			double allocation = 0;
+			for (int i = 0; i < iterations; i++)
+			{
+				double[] measured = iterate(benchmark, millis);
+				throughput[i] = measured[0];
+				allocation += measured[1] / iterations;
+			}
+			double mean = 0;
+			for (double value : throughput)
+			{
+				mean += value / iterations;
+			}
+			double variance = 0;
+			for (double value : throughput)
+			{
+				variance += (value - mean) * (value - mean) / Math.max(1, iterations - 1);
+			}
+			System.out.printf("%-10s %14.1f %12.1f %14.0f%n", benchmark.name, mean, Math.sqrt(variance), allocation);
+		}
+	}
+}
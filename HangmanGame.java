@@ -1,8 +1,9 @@
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
-class HangmanGame {
+class HangmanGame implements GameState {
   /**
    * A enum for the current state of the game
    */
@@ -13,6 +14,11 @@ class HangmanGame {
    */
   public static final Character MYSTERY_LETTER = '-';
 
+  /**
+   * Number of letters 'A' to 'Z' tracked in the letter masks, bit i stands for the letter 'A' + i
+   */
+  public static final int NUM_LETTERS = 26;
+
   /**
    * The word that needs to be guessed (e.g. 'FACTUAL')
    */
@@ -29,19 +35,40 @@ class HangmanGame {
   private final char[] guessedSoFar;
 
   /**
-   * Set of all correct letter guesses so far (e.g. 'C', 'F', 'L', 'T', 'U')
+   * The letters guessed so far as a String, null until asked for after the last change
+   */
+  private String guessedSoFarString;
+
+  /**
+   * Number of positions of guessedSoFar still holding the MYSTERY_LETTER, the game is won at 0
    */
-  private Set<Character> correctlyGuessedLetters = new HashSet<Character>();
+  private int numUnrevealed;
 
   /**
-   * Set of all incorrect letter guesses so far (e.g. 'R', 'S')
+   * Mask of all correct letter guesses so far (e.g. 'C', 'F', 'L', 'T', 'U'), see NUM_LETTERS
    */
-  private Set<Character> incorrectlyGuessedLetters = new HashSet<Character>();
+  private int correctLetterMask;
 
   /**
-   * Set of all incorrect word guesses so far (e.g. 'FACTORS')
+   * Mask of all incorrect letter guesses so far (e.g. 'R', 'S'), see NUM_LETTERS
    */
-  private Set<String> incorrectlyGuessedWords = new HashSet<String>();
+  private int incorrectLetterMask;
+
+  /**
+   * Guessed characters outside 'A' to 'Z', correct or not; null until one is guessed
+   */
+  private Set<Character> correctlyGuessedOthers;
+  private Set<Character> incorrectlyGuessedOthers;
+
+  /**
+   * Set of all incorrect word guesses so far in guessing order (e.g. 'FACTORS'), null until the first one
+   */
+  private Set<String> incorrectlyGuessedWords;
+
+  /**
+   * Number of incorrect letter and word guesses so far
+   */
+  private int numWrongGuesses;
 
   /**
    * @param secretWord The word that needs to be guessed
@@ -50,12 +77,26 @@ class HangmanGame {
   public HangmanGame(String secretWord, int maxWrongGuesses) {
     this.secretWord = secretWord.toUpperCase();
     this.guessedSoFar = new char[secretWord.length()];
+    char mysteryLetter = MYSTERY_LETTER;
     for (int i = 0; i < secretWord.length(); i++) {
-      guessedSoFar[i] = MYSTERY_LETTER;
+      guessedSoFar[i] = mysteryLetter;
+      // a MYSTERY_LETTER in the secret word already matches the board
+      if (this.secretWord.charAt(i) != mysteryLetter) {
+        numUnrevealed++;
+      }
     }
     this.maxWrongGuesses = maxWrongGuesses;
   }
 
+  /**
+   * @param ch A letter in any case
+   * @return The bit of the letter in the letter masks, 0 for a character outside 'A' to 'Z'
+   */
+  public static int letterBit(char ch) {
+    int index = Character.toUpperCase(ch) - 'A';
+    return (index >= 0 && index < NUM_LETTERS) ? 1 << index : 0;
+  }
+
   /**
    * Guess the specified letter and update the game state accordingly
    * @return The string representation of the current game state
@@ -66,18 +107,27 @@ class HangmanGame {
     ch = Character.toUpperCase(ch);    
     // update the guessedSoFar buffer with the new character
     boolean goodGuess = false;
+    char mysteryLetter = MYSTERY_LETTER;
     for (int i = 0; i < secretWord.length(); i++) {
       if (secretWord.charAt(i) == ch) {
-        guessedSoFar[i] = ch;
+        if (guessedSoFar[i] == mysteryLetter && ch != mysteryLetter) {
+          guessedSoFar[i] = ch;
+          numUnrevealed--;
+          guessedSoFarString = null;
+        }
         goodGuess = true;
       }
     }
 
     // update the proper set of guessed letters
-    if (goodGuess) {
-      correctlyGuessedLetters.add(ch);
-    } else {
-      incorrectlyGuessedLetters.add(ch);
+    int bit = letterBit(ch);
+    if (bit == 0) {
+      addOtherLetter(ch, goodGuess);
+    } else if (goodGuess) {
+      correctLetterMask |= bit;
+    } else if ((incorrectLetterMask & bit) == 0) {
+      incorrectLetterMask |= bit;
+      numWrongGuesses++;
     }
 
     return getGuessedSoFar();
@@ -99,14 +149,40 @@ class HangmanGame {
       for (int i = 0; i<secretWord.length(); i++) {
         guessedSoFar[i] = secretWord.charAt(i);
       }
+      numUnrevealed = 0;
+      guessedSoFarString = secretWord;
     } else {
     	//System.out.println("incorrect word guess");
-      incorrectlyGuessedWords.add(guess);
+      if (incorrectlyGuessedWords == null) {
+        incorrectlyGuessedWords = new LinkedHashSet<String>();
+      }
+      if (incorrectlyGuessedWords.add(guess)) {
+        numWrongGuesses++;
+      }
     }
 
     return getGuessedSoFar();
   }
 
+  /**
+   * Record a guessed character outside 'A' to 'Z'
+   */
+  private void addOtherLetter(char ch, boolean goodGuess) {
+    if (goodGuess) {
+      if (correctlyGuessedOthers == null) {
+        correctlyGuessedOthers = new HashSet<Character>();
+      }
+      correctlyGuessedOthers.add(ch);
+    } else {
+      if (incorrectlyGuessedOthers == null) {
+        incorrectlyGuessedOthers = new HashSet<Character>();
+      }
+      if (incorrectlyGuessedOthers.add(ch)) {
+        numWrongGuesses++;
+      }
+    }
+  }
+
   /**
    * @return The score for the current game state
    */
@@ -114,7 +190,11 @@ class HangmanGame {
     if (gameStatus() == Status.GAME_LOST) {
       return 25;
     } else {
-      return numWrongGuessesMade() + correctlyGuessedLetters.size();
+      int numCorrectLetters = Integer.bitCount(correctLetterMask);
+      if (correctlyGuessedOthers != null) {
+        numCorrectLetters += correctlyGuessedOthers.size();
+      }
+      return numWrongGuesses + numCorrectLetters;
     }
   }
 
@@ -128,7 +208,7 @@ class HangmanGame {
    * @return The current game status
    */
   public Status gameStatus() {
-    if (secretWord.equals(getGuessedSoFar())) {
+    if (numUnrevealed == 0) {
     	//System.out.println("game won");
       return Status.GAME_WON;
     } else if (numWrongGuessesMade() > maxWrongGuesses) {
@@ -144,7 +224,7 @@ class HangmanGame {
    * @return Number of wrong guesses made so far
    */
   public int numWrongGuessesMade() {
-    return incorrectlyGuessedLetters.size() + incorrectlyGuessedWords.size();
+    return numWrongGuesses;
   }
 
   /**
@@ -166,40 +246,119 @@ class HangmanGame {
    * (which will contain MYSTERY_LETTER in place of unknown letters)
    */
   public String getGuessedSoFar() {
-    return new String(guessedSoFar);
+    if (guessedSoFarString == null) {
+      guessedSoFarString = new String(guessedSoFar);
+    }
+    return guessedSoFarString;
+  }
+
+  /**
+   * @param position A position in the secret word
+   * @return The letter at the position (upper case), or MYSTERY_LETTER when it is unknown
+   */
+  public char getGuessedSoFarAt(int position) {
+    return guessedSoFar[position];
+  }
+
+  /**
+   * Copy the current game state without allocating
+   * @param board Receives getGuessedSoFar() in its first getSecretWordLength() slots
+   */
+  public void copyGuessedSoFar(char[] board) {
+    System.arraycopy(guessedSoFar, 0, board, 0, guessedSoFar.length);
+  }
+
+  /**
+   * @return Number of positions of the secret word that are still unknown
+   */
+  public int getNumUnrevealed() {
+    return numUnrevealed;
+  }
+
+  /**
+   * @return Mask of the correctly guessed letters 'A' to 'Z', see letterBit
+   */
+  public int getCorrectLetterMask() {
+    return correctLetterMask;
+  }
+
+  /**
+   * @return Mask of the incorrectly guessed letters 'A' to 'Z', see letterBit
+   */
+  public int getIncorrectLetterMask() {
+    return incorrectLetterMask;
+  }
+
+  /**
+   * @return Mask of all guessed letters 'A' to 'Z', see letterBit
+   */
+  public int getGuessedLetterMask() {
+    return correctLetterMask | incorrectLetterMask;
+  }
+
+  /**
+   * @return true if a character outside 'A' to 'Z' was guessed, the letter masks then miss it
+   */
+  public boolean hasGuessedOtherLetters() {
+    return correctlyGuessedOthers != null || incorrectlyGuessedOthers != null;
+  }
+
+  /**
+   * @return Number of distinct incorrect word guesses so far
+   */
+  public int getNumIncorrectlyGuessedWords() {
+    return (incorrectlyGuessedWords == null) ? 0 : incorrectlyGuessedWords.size();
   }
 
   /**
    * @return Set of all correctly guessed letters so far
    */
   public Set<Character> getCorrectlyGuessedLetters() {
-    return Collections.unmodifiableSet(correctlyGuessedLetters);
+    return Collections.unmodifiableSet(toLetterSet(correctLetterMask, correctlyGuessedOthers));
   }
 
   /**
    * @return Set of all incorrectly guessed letters so far
    */
   public Set<Character> getIncorrectlyGuessedLetters() {
-    return Collections.unmodifiableSet(incorrectlyGuessedLetters);
+    return Collections.unmodifiableSet(toLetterSet(incorrectLetterMask, incorrectlyGuessedOthers));
   }
 
   /**
    * @return Set of all guessed letters so far
    */
   public Set<Character> getAllGuessedLetters() {
-    Set<Character> guessed = new HashSet<Character>();
-    guessed.addAll(correctlyGuessedLetters);
-    guessed.addAll(incorrectlyGuessedLetters);
+    Set<Character> guessed = toLetterSet(getGuessedLetterMask(), correctlyGuessedOthers);
+    if (incorrectlyGuessedOthers != null) {
+      guessed.addAll(incorrectlyGuessedOthers);
+    }
     return guessed;
   }
 
   /**
-   * @return Set of all incorrectly guessed words so far
+   * @return Set of all incorrectly guessed words so far, in guessing order
    */
   public Set<String> getIncorrectlyGuessedWords() {
+    if (incorrectlyGuessedWords == null) {
+      return Collections.emptySet();
+    }
     return Collections.unmodifiableSet(incorrectlyGuessedWords);
   }
 
+  /**
+   * @return A new set of the letters of the mask (upper case) and the other characters
+   */
+  private static Set<Character> toLetterSet(int mask, Set<Character> others) {
+    Set<Character> letters = new HashSet<Character>();
+    for (int bits = mask; bits != 0; bits &= bits - 1) {
+      letters.add((char) ('A' + Integer.numberOfTrailingZeros(bits)));
+    }
+    if (others != null) {
+      letters.addAll(others);
+    }
+    return letters;
+  }
+
   /**
    * @return The length of the secret word
    */
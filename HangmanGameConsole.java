@@ -1,23 +1,69 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class HangmanGameConsole {
+	//Games per worker thread played in lockstep in each wave of a parallel run
+	static final int BATCH_SIZE = 1024;
+	
 	private int totalScore;
 	private int gamesWon;
 	private int gamesLost;
 	private String wordFileName; //file containing the dictionary
-	private ArrayList<String>words = new ArrayList<String>(); //words found in the dictionary
-	private Map<Integer, TreeMap<Character, Integer>> letterCallingOrder = new HashMap<Integer, TreeMap<Character, Integer>>(); //letter frequency map per word length
+	private Random random; //picks the secret words and seeds the random source of every game
+	private ForkJoinPool scoringPool; //scores large candidate sets of a single guess in parallel, null if off
+	private int parallelThreshold = HangmanGuessingStrategy.DEFAULT_PARALLEL_THRESHOLD;
+	private DecisionCache decisionCache; //decisions shared between games, null if off
+	private Map<Integer, DecisionTree> decisionTrees; //precompiled guesses per word length, null if off
+	private StrategyMetrics metrics; //counters of every guess and game, null if off
+	private String openingBookFileName; //file of the opening book, null if off
+	private int openingBookDepth = OpeningBook.DEFAULT_DEPTH;
+	private OpeningBook openingBook; //precompiled first guesses per word length, null before it is loaded
+	private ResultSink resultSink = new TextResultSink(System.out, false); //receives the record of every game
+	private int ingestThreads = Runtime.getRuntime().availableProcessors(); //threads reading the text dictionary
+	private long batchedGuesses; //guesses made in lockstep batches and the distinct game states among them
+	private long batchedStates;
+	private DictionaryIngest dictionaryIngest; //the text dictionary read by play, null before it is read
+	private BinaryDictionary binaryDictionary; //memory-mapped dictionary read instead of the text file, null if off
+	private List<String>words = new ArrayList<String>(); //words found in the dictionary
+	private boolean lazyIndex; //index and rank every word length on its first game instead of at load
+	private boolean prewarmIndex; //build the remaining word lengths on a background thread
+	private long lookaheadNanos; //time budget of every guess of the lookahead search, 0 if off
+	private int lookaheadDepth = LookaheadGuessingStrategy.DEFAULT_MAX_DEPTH;
+	private LookaheadGuessingStrategy lookahead; //the lookahead strategy of the run, null if off
+	private EntropySampler entropySampler; //picks the letter of large candidate sets from samples, null if off
+	private volatile Map<Integer, int[]> letterCounts; //letter counts per word length left to rank on first use, null if ranked at load
+	private volatile HangmanGuessingStrategy strategy; //the shared strategy of the run, null before it is built
+	private Map<Integer, TreeMap<Character, Integer>> letterCallingOrder = new ConcurrentHashMap<Integer, TreeMap<Character, Integer>>(); //letter frequency map per word length
 	
 	public HangmanGameConsole(String fileName) {
+		this(fileName, null);
+	}
+	
+	/*
+	 * @param file containing the dictionary
+	 * @param seed for the secret words and the strategy's random choices, null for a different run every time
+	 */
+	public HangmanGameConsole(String fileName, Long seed) {
 		this.totalScore = 0; 
 		this.wordFileName = fileName;
 		this.gamesWon = 0;
 		this.gamesLost = 0;
+		this.random = (seed != null) ? new Random(seed.longValue()) : new Random();
 	}
 	
 	public void retrieveWordList()
 	{
+		if (binaryDictionary != null)
+		{
+			this.words = binaryDictionary.asList();
+			return;
+		}
 		try {
 			this.words = FileScanner.readLinesFromFile(this.wordFileName);
 		} catch (FileNotFoundException e1) {
@@ -25,6 +71,147 @@ public class HangmanGameConsole {
 		}
 	}
 	
+	/*
+	 * Score the guesses of large candidate sets in parallel
+	 * @param pool for scoring, null to score every guess on the thread playing the game
+	 * @param minimum number of word candidates for scoring on the pool
+	 */
+	public void setParallelScoring(ForkJoinPool scoringPool, int parallelThreshold)
+	{
+		this.scoringPool = scoringPool;
+		this.parallelThreshold = parallelThreshold;
+	}
+	
+	/*
+	 * Share the decisions of identical game states between games
+	 * @param cache of decisions, null to decide every state
+	 */
+	public void setDecisionCache(DecisionCache decisionCache)
+	{
+		this.decisionCache = decisionCache;
+	}
+	
+	/*
+	 * Write the record of every game to a sink instead of printing it to System.out
+	 * @param sink of the game records, written from the thread calling play
+	 */
+	public void setResultSink(ResultSink resultSink)
+	{
+		this.resultSink = resultSink;
+	}
+	
+	/*
+	 * Measure every guess of the strategy and every game
+	 * @param counters to record to, null to not measure
+	 */
+	public void setMetrics(StrategyMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	/*
+	 * Answer the guesses from precompiled decision trees, states outside of the trees
+	 * fall back to the entropy strategy
+	 * @param trees keyed by word length, null to use the entropy strategy only
+	 */
+	public void setDecisionTrees(Map<Integer, DecisionTree> decisionTrees)
+	{
+		this.decisionTrees = decisionTrees;
+	}
+	
+	/*
+	 * Answer the first guesses of every game from an opening book, read from the file or compiled
+	 * to it when the strategy is created
+	 * @param file of the book, null to decide every guess
+	 * @param number of guesses compiled into the book
+	 */
+	public void setOpeningBook(String fileName, int depth)
+	{
+		this.openingBookFileName = fileName;
+		this.openingBookDepth = depth;
+	}
+	
+	/*
+	 * Search a few guesses ahead for the lowest expected score within a time budget per guess,
+	 * falling back to the entropy strategy's guess when no search finishes in time
+	 * @param time budget of every guess in milliseconds, 0 to guess by entropy only
+	 * @param deepest search in guesses
+	 */
+	public void setLookahead(long budgetMillis, int maxDepth)
+	{
+		this.lookaheadNanos = budgetMillis * 1000000L;
+		this.lookaheadDepth = maxDepth;
+	}
+	
+	/*
+	 * Pick the letter of large candidate sets from stratified samples of the candidates; the
+	 * opening book is still compiled from every candidate
+	 * @param smallest candidate set to sample, at least EntropySampler.MIN_THRESHOLD, or 0 to score every candidate
+	 * @param confidence that the sampled letter is the best
+	 */
+	public void setEntropySampling(int threshold, double confidence)
+	{
+		this.entropySampler = (threshold > 0) ? new EntropySampler(threshold, confidence) : null;
+	}
+	
+	/*
+	 * Index and rank the letters of every word length when its first game arrives, instead of
+	 * all lengths when the dictionary is loaded
+	 * @param true to index lazily
+	 * @param true to also build the remaining lengths on a background thread, the lengths
+	 *        asked for most first
+	 */
+	public void setLazyIndex(boolean lazyIndex, boolean prewarmIndex)
+	{
+		this.lazyIndex = lazyIndex || prewarmIndex;
+		this.prewarmIndex = prewarmIndex;
+	}
+	
+	/*
+	 * Read the text dictionary, group the words by length, count the letters of every length
+	 * and index the words in a single parallel pass.  With a lazy index the words are only
+	 * grouped and counted.
+	 * @return the ingested dictionary, with the time spent in each phase
+	 */
+	public DictionaryIngest ingestWordList() throws IOException
+	{
+		this.dictionaryIngest = DictionaryIngest.load(this.wordFileName, ingestThreads, !lazyIndex);
+		this.words = dictionaryIngest.getWords();
+		if (lazyIndex)
+		{
+			this.letterCounts = dictionaryIngest.getLetterCounts();
+		} else
+		{
+			this.rankLettersByWordLength(dictionaryIngest.getLetterCounts());
+		}
+		return dictionaryIngest;
+	}
+	
+	/*
+	 * @param number of threads parsing and indexing the text dictionary
+	 */
+	public void setIngestThreads(int ingestThreads)
+	{
+		this.ingestThreads = ingestThreads;
+	}
+	
+	/*
+	 * Read the words from a memory-mapped binary dictionary instead of the text file
+	 * @param dictionary written by BinaryDictionary, null to read the text file
+	 */
+	public void setBinaryDictionary(BinaryDictionary binaryDictionary)
+	{
+		this.binaryDictionary = binaryDictionary;
+	}
+	
+	/*
+	 * @return words found in the dictionary
+	 */
+	public List<String> getWordList()
+	{
+		return words;
+	}
+	
 	/*
 	 * For each word length, rank the letter frequency with the highest one first.
 	 * Used for guessing first letter when no information is available
@@ -64,6 +251,34 @@ public class HangmanGameConsole {
 			wordLengthMap.put(wordLength, letterCountMap);
 		}
 		
+		this.sortLettersByCount(wordLengthMap);
+	}
+	
+	/*
+	 * Rank the letters of each word length from the letter counts of an ingested dictionary
+	 * @param number of times each letter 'a' to 'z' appears, keyed by word length
+	 */
+	public void rankLettersByWordLength(Map<Integer, int[]> letterCounts)
+	{
+		Map<Integer, HashMap<Character, Integer>> wordLengthMap = new HashMap<Integer, HashMap<Character, Integer>>();
+		for (Map.Entry<Integer, int[]> entry : letterCounts.entrySet())
+		{
+			HashMap<Character, Integer> letterCountMap = new HashMap<Character, Integer>();
+			int[] counts = entry.getValue();
+			for (int letter = 0; letter < counts.length; letter++)
+			{
+				if (counts[letter] > 0)
+				{
+					letterCountMap.put((char) ('a' + letter), counts[letter]);
+				}
+			}
+			wordLengthMap.put(entry.getKey(), letterCountMap);
+		}
+		this.sortLettersByCount(wordLengthMap);
+	}
+	
+	private void sortLettersByCount(Map<Integer, HashMap<Character, Integer>> wordLengthMap)
+	{
 		//Sort the alphabet in order of its frequency for each word length
 		Iterator<Map.Entry<Integer, HashMap<Character, Integer>>> it = wordLengthMap.entrySet().iterator();
 	    while (it.hasNext()) {
@@ -79,6 +294,136 @@ public class HangmanGameConsole {
 	    }
 	}
 	
+	/*
+	 * @param length of the secret word
+	 * @return the opening book's first letter for the length, or else the most frequent letter
+	 *         among the words of that length, guessed first in every game
+	 */
+	public char getOpeningLetter(int wordLength)
+	{
+		//The strategy drops the book's lengths whose words change
+		OpeningBook book = (strategy != null) ? strategy.getOpeningBook() : openingBook;
+		if (book != null)
+		{
+			char letter = book.getOpeningLetter(wordLength);
+			if (letter != 0)
+			{
+				return letter;
+			}
+		}
+		TreeMap<Character, Integer> callOrderMap = letterCallingOrder.get(wordLength);
+		if (callOrderMap == null)
+		{
+			callOrderMap = rankLetters(wordLength);
+		}
+		return callOrderMap.firstKey();
+	}
+	
+	/*
+	 * Rank the letters of a word length on its first use with a lazy index, or after its words
+	 * changed.  Threads asking at the same time may both rank it, with the same result.
+	 * @param length of the secret word
+	 * @return the letters of the length in calling order
+	 */
+	private TreeMap<Character, Integer> rankLetters(int wordLength)
+	{
+		int[] counts = null;
+		Map<Integer, int[]> ingestedCounts = letterCounts;
+		if (ingestedCounts != null && ingestedCounts.containsKey(wordLength))
+		{
+			counts = ingestedCounts.get(wordLength);
+		} else if (strategy != null && strategy.getBucket(wordLength) != null)
+		{
+			//Count the letters of the one length in the current index
+			counts = new int[WordBucket.ALPHABET_SIZE];
+			for (byte letter : strategy.getBucket(wordLength).getLetterCodes())
+			{
+				counts[letter]++;
+			}
+		}
+		if (counts == null)
+		{
+			throw new IllegalArgumentException("No words of length " + wordLength);
+		}
+		Map<Integer, int[]> lengthCounts = new HashMap<Integer, int[]>();
+		lengthCounts.put(wordLength, counts);
+		this.rankLettersByWordLength(lengthCounts);
+		return letterCallingOrder.get(wordLength);
+	}
+	
+	/*
+	 * Add and remove words of the strategy's dictionary while games are running or guesses are
+	 * served; games already running finish with the words they started with
+	 * @param words to add, null for none
+	 * @param words to remove, null for none
+	 * @return the word lengths that changed
+	 * @throws IllegalArgumentException for an added word that is not made of the letters a to z or is too
+	 *         long, before any word is changed
+	 */
+	public Set<Integer> updateDictionary(Collection<String> added, Collection<String> removed)
+	{
+		HangmanGuessingStrategy strategy = this.getStrategy();
+		Set<Integer> changed = new TreeSet<Integer>();
+		if (added != null)
+		{
+			changed.addAll(strategy.addWords(added));
+		}
+		if (removed != null)
+		{
+			changed.addAll(strategy.removeWords(removed));
+		}
+		this.forgetLetterRanks(changed);
+		return changed;
+	}
+	
+	/*
+	 * Read the dictionary file again and index the word lengths that changed in it
+	 * @return the word lengths that changed
+	 */
+	public Set<Integer> reloadDictionary() throws IOException
+	{
+		HangmanGuessingStrategy strategy = this.getStrategy();
+		DictionaryIngest reloaded = DictionaryIngest.load(this.wordFileName, ingestThreads, false);
+		Set<Integer> changed = strategy.reload(reloaded.getWords());
+		this.forgetLetterRanks(changed);
+		return changed;
+	}
+	
+	/*
+	 * @return the strategy of the run
+	 * @throws IllegalStateException before the strategy is built
+	 */
+	private HangmanGuessingStrategy getStrategy()
+	{
+		HangmanGuessingStrategy strategy = this.strategy;
+		if (strategy == null)
+		{
+			throw new IllegalStateException("No dictionary loaded yet");
+		}
+		return strategy;
+	}
+	
+	/*
+	 * Rank the letters of the changed word lengths again on their next game
+	 * @param word lengths that changed
+	 */
+	private void forgetLetterRanks(Set<Integer> changed)
+	{
+		if (changed.isEmpty())
+		{
+			return;
+		}
+		Map<Integer, int[]> ingestedCounts = letterCounts;
+		if (ingestedCounts != null)
+		{
+			//Copied, so threads ranking at the same time see either version
+			Map<Integer, int[]> counts = new HashMap<Integer, int[]>(ingestedCounts);
+			counts.keySet().removeAll(changed);
+			letterCounts = counts;
+		}
+		letterCallingOrder.keySet().removeAll(changed);
+	}
+	
 	/*
 	 *Generate a set of random words 
 	 */
@@ -96,8 +441,7 @@ public class HangmanGameConsole {
 	 * @return word string
 	 */
 	public String nextRandomWord() {
-		Random rand = new Random();
-		return words.get(rand.nextInt(this.words.size()));
+		return words.get(random.nextInt(this.words.size()));
 	}
 	
 	/*
@@ -106,58 +450,582 @@ public class HangmanGameConsole {
 	 * @return a single game score
 	 */
 	public int run(HangmanGame game, GuessingStrategy strategy) {
+		return this.run(game, strategy, null);
+	}
+	
+	/*
+	 * Run the given strategy for the given game, then returns the score
+	 * @param game, strategy
+	 * @param list receiving every guess made, a letter or a word, null to not keep them
+	 * @return a single game score
+	 */
+	public int run(HangmanGame game, GuessingStrategy strategy, List<String> guesses) {
+		long startTime = (metrics != null) ? System.nanoTime() : 0;
 		
 		//Get the most frequent letter for secret word length
-		Integer wordLength = game.getSecretWordLength();
-		TreeMap<Character, Integer> callOrderMap = letterCallingOrder.get(wordLength);
-		Character mostFreqChar = callOrderMap.firstKey();
+		char mostFreqChar = getOpeningLetter(game.getSecretWordLength());
 		
 		//Guess the first letter
 		Guess firstGuess = new GuessLetter(mostFreqChar);
 		firstGuess.makeGuess(game);
+		if (guesses != null)
+		{
+			guesses.add(String.valueOf(Character.toUpperCase(mostFreqChar)));
+		}
 		//Keep Guessing
 		while (game.gameStatus() == HangmanGame.Status.KEEP_GUESSING){
 			Guess guess = strategy.nextGuess(game);
 			
 			if (guess != null) {
 				guess.makeGuess(game);
+				if (guesses != null)
+				{
+					guesses.add(describe(guess));
+				}
 			} else {
 				System.out.println("no guess made");
 				break; 
 			}
 		}
+		if (metrics != null)
+		{
+			metrics.recordGame(game.getSecretWordLength(), System.nanoTime() - startTime);
+		}
 		return game.currentScore();
 	}
 	
+	/*
+	 * @param a guess
+	 * @return the guessed letter or word (upper case)
+	 */
+	private static String describe(Guess guess)
+	{
+		if (guess instanceof GuessLetter)
+		{
+			return String.valueOf(Character.toUpperCase(((GuessLetter) guess).getLetter()));
+		}
+		if (guess instanceof GuessWord)
+		{
+			return ((GuessWord) guess).getWord().toUpperCase();
+		}
+		return guess.toString();
+	}
+	
 	public void play(int numGames, int maxGuesses)
 	{
-		//Retrieve the word lists from text file		
-		this.retrieveWordList();			
-		//Measure letter frequency and rank them for each word length
-		this.rankLettersByWordLength();			
+		this.play(numGames, maxGuesses, 1);
+	}
+	
+	/*
+	 * Play and score the given number of random words.
+	 * With more than one thread the games are played in waves of BATCH_SIZE games per thread.
+	 * Each wave is cut into one contiguous lane per thread, and every lane plays its games in
+	 * lockstep on a fork-join pool that shares one strategy instance: all unfinished games of
+	 * the lane make their next guess together, so games in the same state are decided once (see
+	 * HangmanGuessingStrategy.nextGuesses).  Decision trees play the games one by one instead.
+	 * Each game gets its own random source seeded in word order, and the finished games are
+	 * reported and added to the totals in word order on the calling thread, so the output does
+	 * not depend on the number of threads.
+	 * @param number of games
+	 * @param maximum number of wrong guesses per game
+	 * @param number of worker threads
+	 */
+	public void play(int numGames, int maxGuesses, int numThreads)
+	{
+		final HangmanGuessingStrategy strategy = this.createStrategy();
 		//List of words for the game
 		List<String> wordsForGame = this.getRandomWords(numGames);
 		
-		HangmanGuessingStrategy strategy = new HangmanGuessingStrategy(this.words);
-		int wordCounter = 0;		
-		for (String word : wordsForGame)
+		final GuessingStrategy gameStrategy = this.createGameStrategy(strategy);
+		if (numThreads <= 1)
 		{
-			wordCounter++;
-			HangmanGame game = new HangmanGame(word, maxGuesses);
-			int gameScore = this.run(game, strategy);
-			//Game Won or Lost
-			if (game.gameStatus() == HangmanGame.Status.GAME_WON)
+			int wordCounter = 0;		
+			for (String word : wordsForGame)
 			{
-				this.gamesWon++;
+				wordCounter++;
+				this.recordGame(this.playGame(wordCounter, word, maxGuesses, strategy, gameStrategy, random.nextLong()));
+			}
+			return;
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try
+		{
+			if (gameStrategy == null)
+			{
+				this.playWaves(pool, numThreads, wordsForGame, maxGuesses, strategy);
+				return;
+			}
+			List<Future<GameRecord>> results = new ArrayList<Future<GameRecord>>(numGames);
+			int gameNumber = 0;
+			for (final String word : wordsForGame)
+			{
+				final int guesses = maxGuesses;
+				final long gameSeed = random.nextLong();
+				final int number = ++gameNumber;
+				results.add(pool.submit(new Callable<GameRecord>() {
+					@Override
+					public GameRecord call() {
+						return playGame(number, word, guesses, strategy, gameStrategy, gameSeed);
+					}
+				}));
+			}
+			for (Future<GameRecord> result : results)
+			{
+				this.recordGame(result.get());
+			}
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while playing games", e);
+		} catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Game failed", e.getCause());
+		} finally
+		{
+			pool.shutdownNow();
+		}
+	}
+	
+	/*
+	 * Play the games in waves of lockstep lanes and record them in word order
+	 * @param pool running the lanes
+	 * @param number of worker threads
+	 * @param secret words in game order
+	 * @param maximum number of wrong guesses per game
+	 * @param the shared strategy
+	 */
+	private void playWaves(ForkJoinPool pool, int numThreads, List<String> wordsForGame, final int maxGuesses,
+			final HangmanGuessingStrategy strategy) throws InterruptedException, ExecutionException
+	{
+		final String[] words = wordsForGame.toArray(new String[wordsForGame.size()]);
+		final long[] seeds = new long[words.length];
+		for (int i = 0; i < seeds.length; i++)
+		{
+			seeds[i] = random.nextLong();
+		}
+		long batchedGuesses = strategy.getBatchedGuesses();
+		long batchedStates = strategy.getBatchedStates();
+		int waveSize = BATCH_SIZE * numThreads;
+		for (int waveStart = 0; waveStart < words.length; waveStart += waveSize)
+		{
+			int waveEnd = Math.min(words.length, waveStart + waveSize);
+			int laneSize = (waveEnd - waveStart + numThreads - 1) / numThreads;
+			List<Future<GameRecord[]>> lanes = new ArrayList<Future<GameRecord[]>>(numThreads);
+			for (int laneStart = waveStart; laneStart < waveEnd; laneStart += laneSize)
+			{
+				final int from = laneStart;
+				final int to = Math.min(waveEnd, laneStart + laneSize);
+				lanes.add(pool.submit(new Callable<GameRecord[]>() {
+					@Override
+					public GameRecord[] call() {
+						return playLockstep(from, to, words, seeds, maxGuesses, strategy);
+					}
+				}));
+			}
+			for (Future<GameRecord[]> lane : lanes)
+			{
+				for (GameRecord record : lane.get())
+				{
+					this.recordGame(record);
+				}
+			}
+		}
+		this.batchedGuesses += strategy.getBatchedGuesses() - batchedGuesses;
+		this.batchedStates += strategy.getBatchedStates() - batchedStates;
+	}
+	
+	/*
+	 * Play a lane of games in lockstep: the opening letter first, then one batch of guesses for
+	 * all unfinished games at a time.  Each game plays with its own session and random source,
+	 * so it makes the same guesses as when played alone.
+	 * @param index of the first game of the lane
+	 * @param index after the last game of the lane
+	 * @param secret words of all games
+	 * @param seeds of the random sources of all games
+	 * @param maximum number of wrong guesses
+	 * @param the shared strategy
+	 * @return the records of the lane's games in game order
+	 */
+	GameRecord[] playLockstep(int from, int to, String[] words, long[] seeds, int maxGuesses,
+			HangmanGuessingStrategy strategy)
+	{
+		int numGames = to - from;
+		HangmanGame[] games = new HangmanGame[numGames];
+		CandidateSession[] sessions = new CandidateSession[numGames];
+		List<List<String>> guessLists = new ArrayList<List<String>>(numGames);
+		long[] latencies = new long[numGames];
+		//Begun when the game starts and committed when it finishes, as in playGame
+		StrategyEvents.GameEvent[] events = new StrategyEvents.GameEvent[numGames];
+		//Positions of the unfinished games in the lane
+		int[] active = new int[numGames];
+		int numActive = 0;
+		for (int i = 0; i < numGames; i++)
+		{
+			long startTime = System.nanoTime();
+			events[i] = new StrategyEvents.GameEvent();
+			events[i].begin();
+			HangmanGame game = new HangmanGame(words[from + i], maxGuesses);
+			List<String> guesses = new ArrayList<String>();
+			char mostFreqChar = getOpeningLetter(game.getSecretWordLength());
+			new GuessLetter(mostFreqChar).makeGuess(game);
+			guesses.add(String.valueOf(Character.toUpperCase(mostFreqChar)));
+			games[i] = game;
+			sessions[i] = strategy.newSession(game, new Random(seeds[from + i]));
+			guessLists.add(guesses);
+			latencies[i] = System.nanoTime() - startTime;
+			if (game.gameStatus() == HangmanGame.Status.KEEP_GUESSING)
+			{
+				active[numActive++] = i;
 			} else
 			{
-				this.gamesLost++;
+				commitGameEvent(events[i], game);
+			}
+		}
+		
+		CandidateSession[] batch = new CandidateSession[numGames];
+		Guess[] batchGuesses = new Guess[numGames];
+		int[] nextActive = new int[numGames];
+		while (numActive > 0)
+		{
+			long startTime = System.nanoTime();
+			for (int a = 0; a < numActive; a++)
+			{
+				batch[a] = sessions[active[a]];
+			}
+			strategy.nextGuesses(batch, numActive, batchGuesses);
+			int numNextActive = 0;
+			for (int a = 0; a < numActive; a++)
+			{
+				int i = active[a];
+				Guess guess = batchGuesses[a];
+				if (guess == null)
+				{
+					System.out.println("no guess made");
+					commitGameEvent(events[i], games[i]);
+					continue;
+				}
+				guess.makeGuess(games[i]);
+				guessLists.get(i).add(describe(guess));
+				if (games[i].gameStatus() == HangmanGame.Status.KEEP_GUESSING)
+				{
+					nextActive[numNextActive++] = i;
+				} else
+				{
+					commitGameEvent(events[i], games[i]);
+				}
+			}
+			//Every game of the step gets an equal share of its time
+			long share = (System.nanoTime() - startTime) / numActive;
+			for (int a = 0; a < numActive; a++)
+			{
+				latencies[active[a]] += share;
+			}
+			int[] swap = active;
+			active = nextActive;
+			nextActive = swap;
+			numActive = numNextActive;
+		}
+		
+		GameRecord[] records = new GameRecord[numGames];
+		for (int i = 0; i < numGames; i++)
+		{
+			HangmanGame game = games[i];
+			if (metrics != null)
+			{
+				metrics.recordGame(game.getSecretWordLength(), latencies[i]);
+			}
+			records[i] = new GameRecord(from + i + 1, words[from + i].toUpperCase(), game.getGuessedSoFar(),
+					game.currentScore(), game.gameStatus(), guessLists.get(i), latencies[i]);
+		}
+		return records;
+	}
+	
+	/*
+	 * @param the shared strategy
+	 * @return the strategy answering every guess of a game instead of a candidate session: the
+	 *         decision trees, falling back to the lookahead search or to the shared strategy, or the
+	 *         lookahead search alone; null when both are off
+	 * @throws IllegalStateException when the decision trees were compiled from another dictionary
+	 */
+	private GuessingStrategy createGameStrategy(HangmanGuessingStrategy strategy)
+	{
+		if (lookaheadNanos > 0)
+		{
+			this.lookahead = new LookaheadGuessingStrategy(strategy, lookaheadNanos, lookaheadDepth,
+					LookaheadGuessingStrategy.DEFAULT_BRANCHING);
+		}
+		GuessingStrategy fallback = (lookahead != null) ? lookahead : strategy;
+		if (decisionTrees != null)
+		{
+			DecisionTree.checkDictionary(decisionTrees, strategy);
+			return new DecisionTreeStrategy(decisionTrees, fallback);
+		}
+		return lookahead;
+	}
+	
+	/*
+	 * Read the dictionary, rank the opening letters and build the shared strategy
+	 * @return the strategy with the console's scoring pool, cache and metrics
+	 */
+	private HangmanGuessingStrategy createStrategy()
+	{
+		HangmanGuessingStrategy strategy;
+		if (binaryDictionary != null)
+		{
+			//Retrieve the word lists from the mapped dictionary
+			this.retrieveWordList();
+			if (!lazyIndex)
+			{
+				//Measure letter frequency and rank them for each word length
+				this.rankLettersByWordLength();
+			}
+			strategy = new HangmanGuessingStrategy(binaryDictionary, scoringPool, parallelThreshold, decisionCache);
+		} else
+		{
+			//Read, rank and index the text file in one pass
+			try
+			{
+				this.ingestWordList();
+			} catch (IOException e)
+			{
+				throw new IllegalStateException("Failed to read " + wordFileName, e);
+			}
+			strategy = new HangmanGuessingStrategy(dictionaryIngest, scoringPool, parallelThreshold, decisionCache);
+		}
+		strategy.setMetrics(metrics);
+		if (prewarmIndex)
+		{
+			strategy.getIndex().startPrewarm();
+		}
+		if (openingBookFileName != null)
+		{
+			try
+			{
+				this.openingBook = OpeningBook.loadOrBuild(openingBookFileName, strategy, openingBookDepth,
+						ingestThreads);
+			} catch (IOException e)
+			{
+				throw new IllegalStateException("Failed to use opening book " + openingBookFileName, e);
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while compiling the opening book", e);
+			} catch (ExecutionException e)
+			{
+				throw new IllegalStateException("Failed to compile the opening book", e.getCause());
+			}
+			strategy.setOpeningBook(openingBook);
+		}
+		strategy.setSampler(entropySampler);
+		this.strategy = strategy;
+		return strategy;
+	}
+	
+	/*
+	 * Load the dictionary and the strategy once and answer guess requests until the process ends
+	 * @param port to listen on, on the loopback interface
+	 */
+	public void serve(int port) throws IOException
+	{
+		HangmanGuessingStrategy strategy = this.createStrategy();
+		final HangmanServer server = new HangmanServer(this, strategy, port);
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				try
+				{
+					server.close();
+				} catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+				System.out.println("Connections: " + server.getNumConnections() + ", Requests: "
+						+ server.getNumRequests());
+			}
+		}, "server-shutdown"));
+		System.out.println("Serving guesses on port " + server.getPort() + " with "
+				+ (server.usesVirtualThreads() ? "virtual threads" : "a thread pool"));
+		server.serve();
+	}
+	
+	/*
+	 * Play every dictionary word once and print the totals of every word length.
+	 * The games are seeded per word, so the totals do not depend on the number of threads.
+	 * @param maximum number of wrong guesses per game
+	 * @param number of worker threads
+	 * @param seed of the games
+	 * @param checkpoint file to resume from and write to, null for no checkpoints
+	 * @param seconds between checkpoints
+	 * @param true to write the record of every game to the result sink from the worker threads, in the order
+	 *        the games finish, the sink must then be thread-safe like AsyncResultSink
+	 */
+	public void playExhaustive(int maxGuesses, int numThreads, long seed, String checkpointFileName,
+			long checkpointSeconds, boolean writeRecords)
+	{
+		HangmanGuessingStrategy strategy = this.createStrategy();
+		ExhaustiveRun run = new ExhaustiveRun(this, strategy, this.createGameStrategy(strategy), maxGuesses, seed,
+				ExhaustiveRun.DEFAULT_CHUNK_SIZE, writeRecords ? resultSink : null);
+		Map<Integer, ExhaustiveRun.ChunkResult> totals;
+		try
+		{
+			totals = run.run(numThreads, checkpointFileName, checkpointSeconds);
+		} catch (IOException e)
+		{
+			throw new IllegalStateException("Failed to use checkpoint " + checkpointFileName, e);
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while playing games", e);
+		}
+		ExhaustiveRun.printTotals(totals, System.out);
+		for (ExhaustiveRun.ChunkResult total : totals.values())
+		{
+			this.gamesWon += total.getWon();
+			this.gamesLost += total.getGames() - total.getWon();
+			this.totalScore += total.getScore();
+		}
+	}
+	
+	/*
+	 * Play a single game to the end
+	 * @param position of the game in the run
+	 * @param secret word
+	 * @param maximum number of wrong guesses
+	 * @param the shared strategy
+	 * @param the shared strategy guessing instead of a candidate session, null if off
+	 * @param seed of the game's random source
+	 * @return the record of the finished game
+	 */
+	GameRecord playGame(long gameNumber, String word, int maxGuesses, HangmanGuessingStrategy strategy,
+			GuessingStrategy gameStrategy, long gameSeed)
+	{
+		long startTime = System.nanoTime();
+		HangmanGame game = new HangmanGame(word, maxGuesses);
+		List<String> guesses = new ArrayList<String>();
+		StrategyEvents.GameEvent event = new StrategyEvents.GameEvent();
+		event.begin();
+		if (gameStrategy != null)
+		{
+			this.run(game, this.newGameSession(strategy, gameStrategy, game, gameSeed), guesses);
+		} else
+		{
+			//Keep the candidate words of this game between guesses
+			this.run(game, strategy.newSession(game, new Random(gameSeed)), guesses);
+		}
+		commitGameEvent(event, game);
+		return new GameRecord(gameNumber, word.toUpperCase(), game.getGuessedSoFar(), game.currentScore(),
+				game.gameStatus(), guesses, System.nanoTime() - startTime);
+	}
+	
+	/*
+	 * End the flight recorder event of a finished game
+	 * @param the event begun when the game started
+	 * @param the finished game
+	 */
+	private static void commitGameEvent(StrategyEvents.GameEvent event, HangmanGame game)
+	{
+		if (event.shouldCommit())
+		{
+			event.wordLength = game.getSecretWordLength();
+			event.won = game.gameStatus() == HangmanGame.Status.GAME_WON;
+			event.score = game.currentScore();
+			event.commit();
+		}
+	}
+	
+	/*
+	 * Route the guesses the game strategy hands on to a session seeded for this game, so the
+	 * words it picks do not depend on the thread playing the game
+	 * @param the shared strategy
+	 * @param the decision trees or the lookahead search, see createGameStrategy
+	 * @param the game to play
+	 * @param seed of the game's random source
+	 * @return the strategy answering every guess of the game
+	 */
+	private GuessingStrategy newGameSession(HangmanGuessingStrategy strategy, GuessingStrategy gameStrategy,
+			HangmanGame game, long gameSeed)
+	{
+		Random rand = new Random(gameSeed);
+		GuessingStrategy session = (lookahead != null) ? lookahead.newSession(game, rand)
+				: strategy.newSession(game, rand);
+		if (gameStrategy instanceof DecisionTreeStrategy)
+		{
+			return ((DecisionTreeStrategy) gameStrategy).withFallback(session);
+		}
+		return session;
+	}
+	
+	/*
+	 * Add a finished game to the totals and write it to the result sink
+	 * @param the record of the finished game
+	 */
+	private void recordGame(GameRecord record)
+	{
+		//Game Won or Lost
+		if (record.getStatus() == HangmanGame.Status.GAME_WON)
+		{
+			this.gamesWon++;
+		} else
+		{
+			this.gamesLost++;
+		}
+		this.totalScore += record.getScore();
+		try
+		{
+			resultSink.write(record);
+		} catch (IOException e)
+		{
+			throw new IllegalStateException("Failed to write game " + record.getGameNumber(), e);
+		}
+	}
+	
+	/*
+	 * Create the sink of the game records, written on its own thread
+	 * @param text, csv, jsonl or binary, null for text
+	 * @param file to write to, null for System.out
+	 * @return the sink
+	 * @throws IllegalArgumentException for an unknown format or binary records without a file
+	 */
+	static ResultSink createResultSink(String format, String fileName) throws IOException
+	{
+		if (format == null)
+		{
+			format = "text";
+		}
+		if (format.equals("binary"))
+		{
+			if (fileName == null)
+			{
+				throw new IllegalArgumentException("Binary results need a file");
 			}
-			this.totalScore += gameScore;
-			System.out.printf("%d) Secret word=%s; ", wordCounter, word.toUpperCase());
-			System.out.printf("Game So Far=" + game.toString());
-			System.out.println();
+			return new AsyncResultSink(new BinaryResultSink(new BufferedOutputStream(new FileOutputStream(fileName),
+					1 << 16)), AsyncResultSink.DEFAULT_CAPACITY);
+		}
+		if (format.equals("text"))
+		{
+			//Buffer standard output too, the sink flushes it whenever it catches up with the games
+			OutputStream stream = (fileName != null) ? new FileOutputStream(fileName)
+					: new FileOutputStream(FileDescriptor.out);
+			return new AsyncResultSink(new TextResultSink(new PrintStream(new BufferedOutputStream(stream, 1 << 16),
+					false), fileName != null), AsyncResultSink.DEFAULT_CAPACITY);
 		}
+		Writer out = new BufferedWriter((fileName != null) ? new FileWriter(fileName)
+				: new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)), 1 << 16);
+		ResultSink sink;
+		if (format.equals("csv"))
+		{
+			sink = new CsvResultSink(out);
+		} else if (format.equals("jsonl"))
+		{
+			sink = new JsonLinesResultSink(out);
+		} else
+		{
+			out.close();
+			throw new IllegalArgumentException("Unknown result format: " + format);
+		}
+		return new AsyncResultSink(sink, AsyncResultSink.DEFAULT_CAPACITY);
 	}
 	
 	/*
@@ -175,14 +1043,17 @@ public class HangmanGameConsole {
 
 	public static void main(String[] args) {
 		String wordListFileName = "words.txt";		
-		int numGames;
-		if (args.length > 0 && isNumeric(args[0]))
+		ConsoleOptions options;
+		try
 		{
-			numGames = Integer.parseInt(args[0]);
-		} else
+			options = ConsoleOptions.parse(args);
+		} catch (IllegalArgumentException e)
 		{
-			numGames = 15;
+			System.out.println(e.getMessage());
+			System.out.println(ConsoleOptions.USAGE);
+			return;
 		}
+		int numGames = options.getNumGames();
 		int maxGuesses = 5;
 		
 		//Start-time
@@ -190,14 +1061,106 @@ public class HangmanGameConsole {
 		final long endTime;
 		
 		//Instantiate the console that will run multiple Hangman games
-		HangmanGameConsole console = new HangmanGameConsole(wordListFileName);
+		HangmanGameConsole console = new HangmanGameConsole(wordListFileName, options.getSeed());
+		ForkJoinPool scoringPool = null;
+		if (options.getScoringThreads() > 0)
+		{
+			scoringPool = new ForkJoinPool(options.getScoringThreads());
+			console.setParallelScoring(scoringPool, options.getParallelThreshold());
+		}
+		if (options.getCacheSize() > 0)
+		{
+			console.setDecisionCache(new DecisionCache(options.getCacheSize()));
+		}
+		console.setIngestThreads(options.getIngestThreads());
+		if (options.getBinaryFileName() != null)
+		{
+			try
+			{
+				console.setBinaryDictionary(BinaryDictionary.map(options.getBinaryFileName()));
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+				return;
+			}
+		}
+		ResultSink resultSink;
+		try
+		{
+			resultSink = createResultSink(options.getResultFormat(), options.getResultFileName());
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+			return;
+		}
+		console.setResultSink(resultSink);
+		ScheduledExecutorService metricsWriter = null;
+		if (options.getMetricsFileName() != null)
+		{
+			console.setMetrics(new StrategyMetrics());
+			if (options.getMetricsInterval() > 0)
+			{
+				metricsWriter = console.metrics.scheduleWrites(options.getMetricsFileName(), options.getMetricsInterval());
+			}
+		}
+		console.setOpeningBook(options.getBookFileName(), options.getBookDepth());
+		console.setLazyIndex(options.isLazyIndex(), options.isPrewarmIndex());
+		console.setLookahead(options.getLookaheadMillis(), options.getLookaheadDepth());
+		console.setEntropySampling(options.getSampleThreshold(), options.getSampleConfidence());
+		if (options.getTreeFileName() != null)
+		{
+			try
+			{
+				console.setDecisionTrees(DecisionTree.readTrees(options.getTreeFileName()));
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+				return;
+			}
+		}
 		try
 		{						
 			//Start the game
-			console.play(numGames, maxGuesses);
+			if (options.getServePort() > 0)
+			{
+				try
+				{
+					console.serve(options.getServePort());
+				} catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+				//No games were played, the shutdown hook prints the requests served
+				return;
+			} else if (options.getExhaustiveFileName() != null)
+			{
+				long seed = (options.getSeed() != null) ? options.getSeed().longValue() : 0;
+				console.playExhaustive(maxGuesses, options.getNumThreads(), seed, options.getExhaustiveFileName(),
+						options.getCheckpointInterval(),
+						options.getResultFormat() != null || options.getResultFileName() != null);
+			} else
+			{
+				console.play(numGames, maxGuesses, options.getNumThreads());
+			}
 		} finally 
 		{
+			try
+			{
+				//Wait for the writer to finish the game records before the totals
+				resultSink.close();
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+			}
 			endTime = System.currentTimeMillis();
+			if (scoringPool != null)
+			{
+				scoringPool.shutdown();
+			}
+			if (metricsWriter != null)
+			{
+				metricsWriter.shutdownNow();
+			}
 		}
 		
 		final long duration = endTime - startTime;
@@ -208,6 +1171,47 @@ public class HangmanGameConsole {
 		System.out.println();
 		System.out.printf("Execution Time (sec): %.2f", (float)duration/(float)1000);
 		System.out.println();
+		if (console.dictionaryIngest != null)
+		{
+			System.out.println("Dictionary Ingest: " + console.dictionaryIngest);
+		}
+		if (console.decisionCache != null)
+		{
+			System.out.println("Decision Cache: " + console.decisionCache);
+		}
+		if (console.lazyIndex && console.strategy != null)
+		{
+			System.out.println("Dictionary Index: " + console.strategy.getIndex());
+		}
+		if (console.strategy != null && console.strategy.getOpeningBook() != null)
+		{
+			System.out.println("Opening Book: " + console.strategy.getOpeningBook());
+		}
+		if (console.entropySampler != null)
+		{
+			System.out.println("Entropy Sampler: " + console.entropySampler);
+		}
+		if (console.lookahead != null)
+		{
+			System.out.println("Lookahead: " + console.lookahead);
+		}
+		if (console.batchedGuesses > 0)
+		{
+			System.out.printf("Batched Guesses: %d for %d distinct states (%.1f%% shared)%n", console.batchedGuesses,
+					console.batchedStates, 100.0 * (console.batchedGuesses - console.batchedStates)
+					/ console.batchedGuesses);
+		}
+		if (console.metrics != null)
+		{
+			console.metrics.printSummary(System.out);
+			try
+			{
+				console.metrics.writeFile(options.getMetricsFileName());
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
 	}
 
 }
@@ -1,11 +1,15 @@
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
 
 /*
  * Weight guesses towards the most information gain
@@ -16,319 +20,835 @@ import java.util.Set;
  * 
  * Language Models - http://www.scribd.com/doc/50891038/7/Shannon-game-Word-Prediction
  * 
+ * The words live in an immutable DictionaryIndex that can be shared by several strategies.
+ * addWords, removeWords and reload publish a new version of the index with only the changed
+ * lengths rebuilt; games already running keep the buckets they started with, new games read
+ * the new version, and the decisions and opening book of the changed lengths are dropped.
+ * The per-game working state lives in a CandidateSession and the scoring buffers in a
+ * StrategyCursor per thread, so one strategy instance is shared by games running on different
+ * threads without locking.  Every random word pick comes from a seeded source: the session's
+ * own, or for a nextGuess without a session the cursor of the calling thread.
+ * Large candidate sets can be scored on a fork-join pool: the candidates are split into chunks,
+ * each chunk is counted separately and the partial counts are merged.  Since the entropy only
+ * depends on the merged group sizes, the chosen guess is the same as on the sequential path.
+ * An optional DecisionCache shares the decisions of identical game states between games, and
+ * an optional OpeningBook answers the first guesses of every game without a dictionary scan.
+ * Optional StrategyMetrics record the latency, screening and scoring time of every guess, and
+ * the StrategyEvents flight recorder events trace screening, scoring and every decision.
  */
 public class HangmanGuessingStrategy implements GuessingStrategy {
 	
-	private final Map<Integer, List<String>> dictionaryByLength;
+	//Default number of candidates from which letters are scored in parallel
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 16384;
+	
+	//Seed of the thread cursors unless one is given
+	public static final long DEFAULT_SEED = 0;
+	
+	//Current version of the index, replaced as a whole when the dictionary changes
+	private volatile DictionaryIndex index;
+	
+	//Pool for scoring large candidate sets, null to always score on the calling thread
+	private final ForkJoinPool scoringPool;
+	
+	//Minimum number of candidates for scoring on the pool
+	private final int parallelThreshold;
+	
+	//Decisions of already seen game states, null to decide every state
+	private final DecisionCache decisionCache;
+	
+	//Precompiled first guesses of every word length, null to decide every state
+	private volatile OpeningBook openingBook;
+	
+	//Counters of every guess, null when not measured
+	private volatile StrategyMetrics metrics;
+	
+	//Scores large candidate sets from samples, null to always score every candidate
+	private volatile EntropySampler sampler;
+	
+	//Guesses and distinct game states of the batches answered by nextGuesses
+	private final LongAdder batchedGuesses = new LongAdder();
+	private final LongAdder batchedStates = new LongAdder();
+	
+	//Seed of the thread cursors and number of cursors created so far
+	private final long seed;
+	private final AtomicLong numCursors = new AtomicLong();
+	
+	//Scoring buffers and random source of every thread using the strategy
+	private final ThreadLocal<StrategyCursor> cursors = new ThreadLocal<StrategyCursor>() {
+		@Override
+		protected StrategyCursor initialValue()
+		{
+			return new StrategyCursor(seed, numCursors.getAndIncrement());
+		}
+	};
 	
 	public HangmanGuessingStrategy(List<String> words)
 	{
-		dictionaryByLength = divideWordsByLength(words);
+		this(words, null, DEFAULT_PARALLEL_THRESHOLD, null);
 	}
 	
 	/*
-	 * Create a hashTable with the length of words as key and its corresponding list of words
-	 * as value
 	 * @param words list
-	 * @return a map of words bucketed by the word character length 
+	 * @param pool for scoring large candidate sets in parallel, null for sequential scoring only
+	 * @param minimum number of candidates for scoring on the pool
 	 */
-	private static Map<Integer, List<String>> divideWordsByLength(List<String> words) {
-		Map<Integer, List<String>> dictionary = new HashMap<Integer, List<String>>();
-		
-		for (String word : words)
+	public HangmanGuessingStrategy(List<String> words, ForkJoinPool scoringPool, int parallelThreshold)
+	{
+		this(words, scoringPool, parallelThreshold, null);
+	}
+	
+	/*
+	 * @param words list
+	 * @param pool for scoring large candidate sets in parallel, null for sequential scoring only
+	 * @param minimum number of candidates for scoring on the pool
+	 * @param cache of decisions shared by all games, null to decide every state
+	 */
+	public HangmanGuessingStrategy(List<String> words, ForkJoinPool scoringPool, int parallelThreshold,
+			DecisionCache decisionCache)
+	{
+		this(new DictionaryIndex(words), scoringPool, parallelThreshold, decisionCache, DEFAULT_SEED);
+	}
+	
+	/*
+	 * Index the words of a memory-mapped dictionary without parsing them, each length when it
+	 * is first used; indexing a length copies its letter codes to the heap, one byte per letter
+	 * @param binary dictionary
+	 * @param pool for scoring large candidate sets in parallel, null for sequential scoring only
+	 * @param minimum number of candidates for scoring on the pool
+	 * @param cache of decisions shared by all games, null to decide every state
+	 */
+	public HangmanGuessingStrategy(BinaryDictionary dictionary, ForkJoinPool scoringPool, int parallelThreshold,
+			DecisionCache decisionCache)
+	{
+		this(new DictionaryIndex(dictionary), scoringPool, parallelThreshold, decisionCache, DEFAULT_SEED);
+	}
+	
+	/*
+	 * Use the index built while ingesting the dictionary
+	 * @param ingested dictionary
+	 * @param pool for scoring large candidate sets in parallel, null for sequential scoring only
+	 * @param minimum number of candidates for scoring on the pool
+	 * @param cache of decisions shared by all games, null to decide every state
+	 */
+	public HangmanGuessingStrategy(DictionaryIngest dictionary, ForkJoinPool scoringPool, int parallelThreshold,
+			DecisionCache decisionCache)
+	{
+		this(new DictionaryIndex(dictionary), scoringPool, parallelThreshold, decisionCache, DEFAULT_SEED);
+	}
+	
+	/*
+	 * Guess from an index that may be shared with other strategies
+	 * @param dictionary index
+	 * @param pool for scoring large candidate sets in parallel, null for sequential scoring only
+	 * @param minimum number of candidates for scoring on the pool
+	 * @param cache of decisions shared by all games, null to decide every state
+	 * @param seed of the random sources of the threads guessing without a session
+	 */
+	public HangmanGuessingStrategy(DictionaryIndex index, ForkJoinPool scoringPool, int parallelThreshold,
+			DecisionCache decisionCache, long seed)
+	{
+		this.index = index;
+		this.scoringPool = scoringPool;
+		this.parallelThreshold = parallelThreshold;
+		this.decisionCache = decisionCache;
+		this.seed = seed;
+	}
+	
+	/*
+	 * Measure every guess
+	 * @param counters to record to, null to stop measuring
+	 */
+	public void setMetrics(StrategyMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	/*
+	 * Answer the first guesses of every game from a precompiled book
+	 * @param book built from the same dictionary, null to decide every state
+	 */
+	public void setOpeningBook(OpeningBook openingBook)
+	{
+		this.openingBook = openingBook;
+	}
+	
+	/*
+	 * @return the book of first guesses, null if there is none
+	 */
+	public OpeningBook getOpeningBook()
+	{
+		return openingBook;
+	}
+	
+	/*
+	 * Pick the letter of large candidate sets from samples of the candidates
+	 * @param sampler of the sets, null to score every candidate
+	 */
+	public void setSampler(EntropySampler sampler)
+	{
+		this.sampler = sampler;
+	}
+	
+	/*
+	 * @return the sampler of large candidate sets, null if every candidate is scored
+	 */
+	public EntropySampler getSampler()
+	{
+		return sampler;
+	}
+	
+	/*
+	 * @return the counters of every guess, null when not measured
+	 */
+	public StrategyMetrics getMetrics()
+	{
+		return metrics;
+	}
+	
+	/*
+	 * @return the cache of decisions, null if there is none
+	 */
+	public DecisionCache getDecisionCache()
+	{
+		return decisionCache;
+	}
+	
+	/*
+	 * @return the dictionary index, shareable with other strategies
+	 */
+	public DictionaryIndex getIndex()
+	{
+		return index;
+	}
+	
+	/*
+	 * Add words to the dictionary while games are running
+	 * @param words to add, in any case
+	 * @return the word lengths that changed
+	 * @throws IllegalArgumentException for a word that WordBucket.checkWord rejects, nothing is added then
+	 */
+	public synchronized Set<Integer> addWords(Collection<String> words)
+	{
+		return publish(index.withChanges(words, null));
+	}
+	
+	/*
+	 * Remove words from the dictionary while games are running
+	 * @param words to remove, in any case
+	 * @return the word lengths that changed
+	 */
+	public synchronized Set<Integer> removeWords(Collection<String> words)
+	{
+		return publish(index.withChanges(null, words));
+	}
+	
+	/*
+	 * Replace the dictionary while games are running, only the lengths whose words changed are
+	 * indexed again
+	 * @param all the words of the new dictionary, lower case
+	 * @return the word lengths that changed
+	 */
+	public synchronized Set<Integer> reload(List<String> words)
+	{
+		return publish(index.withWords(words));
+	}
+	
+	/*
+	 * Make a new version of the index current and drop what was derived from the old words
+	 * @param new version of the index
+	 * @return the word lengths that changed
+	 */
+	private Set<Integer> publish(DictionaryIndex updated)
+	{
+		Set<Integer> changed = index.getChangedLengths(updated);
+		if (changed.isEmpty())
 		{
-			Integer wordLength = word.length();
-			if (dictionary.containsKey(wordLength))
-			{
-				//Add to existing list of certain length
-				dictionary.get(wordLength).add(word);
-			} else 
+			return changed;
+		}
+		index = updated;
+		OpeningBook book = openingBook;
+		if (book != null)
+		{
+			openingBook = book.without(changed);
+		}
+		if (decisionCache != null)
+		{
+			for (Integer length : changed)
 			{
-				//Create a new list for this length
-				List<String> newWordList = new LinkedList<String>();
-				newWordList.add(word);
-				dictionary.put(wordLength, newWordList);
+				decisionCache.invalidate(length);
 			}
 		}
-		return dictionary;
+		return changed;
 	}
 	
 	/*
-	 * Get a list of word candidates
-	 *@param current HangmanGame instance
-	 *@return a list of remaining possible matching words  
+	 * @return the working state of the calling thread
 	 */
-	private List<String> screenWordCandidates(HangmanGame game)
+	StrategyCursor getCursor()
 	{
-		//Screen candidates based on the current game's secret word
-		Integer length = game.getSecretWordLength();
-		List<String> wordList = dictionaryByLength.get(length);		
-		//Current game so far
-		char[] wordGuessedSoFar = game.getGuessedSoFar().toCharArray();		
-		//All guessed letters
-		Set<Character> allGuessedLetters = game.getAllGuessedLetters();		
-		//Screen word candidate list by guessed letters
-		wordList = HangmanGuessingStrategy.screenByLetter(wordList, allGuessedLetters, wordGuessedSoFar);
-		//All guessed words
-		Set<String> incorrectlyGuessedWords = game.getIncorrectlyGuessedWords();		
-		//Screen word candidate list with previously guessed words
-		wordList = HangmanGuessingStrategy.screenByWord(wordList, incorrectlyGuessedWords);				
-		return wordList; 
+		return cursors.get();
 	}
 	
 	/*
-	 * A helper function for method screen to determine if a word can be the mystery word
-	 * @param the word under examination
-	 * @param the word guessed so far
-	 * @param all previously guessed letter
-	 * @param the symbol that represents the mystery letter
-	 * @return True or False 
+	 * @return the word lengths of the dictionary in ascending order
 	 */
-	private static boolean isCandidate(String word, char[] wordGuessedSoFar, Set<Character> allGuessedLetters, char mysteryLetter)
+	public SortedSet<Integer> getWordLengths()
 	{
-		boolean pass = true;	
-		
-		wordLoop: for (int i = 0; i < word.length(); i++)
+		return index.getWordLengths();
+	}
+	
+	/*
+	 * @param length of the words
+	 * @return all the dictionary words of the length in dictionary order, empty if there are none
+	 */
+	public String[] getWords(int wordLength)
+	{
+		return index.getWords(wordLength);
+	}
+	
+	/*
+	 * @return CRC-32 over every word length and the checksum of its words, identifying the dictionary
+	 */
+	public long getChecksum()
+	{
+		CRC32 crc = new CRC32();
+		for (int length : getWordLengths())
 		{
-			if (wordGuessedSoFar[i] == mysteryLetter)
+			long checksum = getChecksum(length);
+			crc.update(length);
+			for (int shift = 24; shift >= 0; shift -= 8)
 			{
-				for (Character c : allGuessedLetters)
-				{
-					if (c.charValue() == Character.toUpperCase(word.charAt(i)))
-					{
-						pass = false;
-						break wordLoop;
-					}
-				}
-					
-			} else {
-				if (wordGuessedSoFar[i] == Character.toUpperCase(word.charAt(i)))
-				{
-					continue;
-				} else {
-					pass = false;
-					break wordLoop;
-				}
-				
+				crc.update((int) (checksum >>> shift));
 			}
 		}
-		return pass;
+		return crc.getValue();
 	}
-
+	
 	/*
-	 * A helper function for method screenWordCandidates to check word candidates base
-	 * on previously guessed letters
-	 * @param a list of words
-	 * @param all previously guessed letters
-	 * @param current game board with correctly guessed letters in position
-	 * @return a modified list of words   
+	 * @param length of the words
+	 * @return CRC-32 of the dictionary words of the length in index order, 0 if there are none
 	 */
-	private static List<String> screenByLetter(List<String> wordList,
-			Set<Character> allGuessedLetters, char[] wordGuessedSoFar) {
-		//Modified List with all possible candidates
-		List<String> screened = new LinkedList<String>();
-		
-		//Hangman game mystery character
-		char mysteryLetter = HangmanGame.MYSTERY_LETTER;
+	public long getChecksum(int wordLength)
+	{
+		WordBucket bucket = index.getBucket(wordLength);
+		return (bucket != null) ? bucket.checksum() : 0;
+	}
+	
+	/*
+	 * @param length of the words
+	 * @return number of dictionary words of the length
+	 */
+	public int getNumWords(int wordLength)
+	{
+		return index.getNumWords(wordLength);
+	}
+	
+	/*
+	 * Start a candidate session for a single game.  The session keeps the surviving
+	 * word candidates between guesses so they only need to be refined by the newest result.
+	 * The session's random source is seeded from the cursor of the calling thread.
+	 * @param current game state
+	 * @return a session that answers nextGuess for this game only
+	 */
+	public CandidateSession newSession(GameState game)
+	{
+		return newSession(game, new Random(cursors.get().getRandom().nextLong()));
+	}
+	
+	/*
+	 * Start a candidate session for a single game
+	 * @param current game state
+	 * @param random source for picking among word candidates, seed it for repeatable games
+	 * @return a session that answers nextGuess for this game only
+	 */
+	public CandidateSession newSession(GameState game, Random rand)
+	{
+		return new CandidateSession(this, game, rand);
+	}
+	
+	/*
+	 * @param length of the words
+	 * @return the index of the length, null if the dictionary has no words of the length
+	 */
+	WordBucket getBucket(int wordLength)
+	{
+		return index.getBucket(wordLength);
+	}
+	
+	/*
+	 * Get the word candidates
+	 *@param current game state
+	 *@return the bucket indexes of the remaining possible matching words in dictionary order
+	 */
+	int[] screenWordCandidates(GameState game)
+	{
+		return index.screen(game);
+	}
+	
+	/*
+	 * Find all the positions of mystery letters in the current game
+	 * @param current game board with missing letters
+	 * @param mystery letter symbol
+	 * @param array to receive the positions with missing letters
+	 * @return number of positions with missing letters
+	 */
+	private static int getEmptyLetterPositions(char[] wordGuessedSoFar, char mysteryLetter, int[] emptyLetterPositions)
+	{
+		int numEmpty = 0;
 		
-		for (String word : wordList)
+		for (int i = 0; i < wordGuessedSoFar.length; i++)
 		{
-			if (isCandidate(word, wordGuessedSoFar, allGuessedLetters, mysteryLetter)) 
+			if (wordGuessedSoFar[i] == mysteryLetter)
 			{
-				screened.add(word);
+				emptyLetterPositions[numEmpty++] = i;				
 			}
 		}
-		return screened;
+		return numEmpty;
+	}
+	
+	@Override
+	public Guess nextGuess(HangmanGame game) {
+		return nextGuess((GameState) game);
 	}
 	
 	/*
-	 * A helper function for method screenWordCandidates to check word candidates base
-	 * on previously guessed words
-	 * @param a list of words
-	 * @param all wrongly guessed words 
-	 * @return a modified list of words   
+	 * Guess for a game state that is not followed by a session, such as a request to HangmanServer
+	 * @param current game state
+	 * @return the next guess, null when no dictionary word matches the state
 	 */
-	private static List<String> screenByWord(List<String> wordList,
-			Set<String> incorrectlyGuessedWords) {
-		List<String> screened = new LinkedList<String>();
-		
-		for (String word : wordList) 
-		{			
-			if (incorrectlyGuessedWords.contains(word.toUpperCase())) {
-				//do not include
-				continue;
-			} else {
-				screened.add(word);
+	public Guess nextGuess(GameState game) {
+		//Without a session the candidates are screened from the whole length bucket, and a
+		//word is picked with the random source of the calling thread
+		return nextGuess(game, new CandidateSession(this, game, cursors.get().getRandom()));
+	}
+	
+	/*
+	 * Answer the game from the decision cache, or refine the session's candidates and decide
+	 * @param current game state
+	 * @param the candidate session of this game
+	 * @return the next guess, null when no dictionary word matches the game
+	 */
+	Guess nextGuess(GameState game, CandidateSession session) {
+		OpeningBook book = openingBook;
+		if (book != null)
+		{
+			//The session catches up with the book's guesses on its first refinement
+			Guess guess = book.nextGuess(game);
+			if (guess != null)
+			{
+				return guess;
 			}
 		}
-		return screened;
-	}	
+		StrategyCursor cursor = cursors.get();
+		ScoringScratch scratch = cursor.acquireScratch();
+		try
+		{
+			DecisionCache.Decision decision = decideState(game, session, scratch, null);
+			return (decision != null) ? decision.toGuess(session.getRandom()) : null;
+		} finally
+		{
+			cursor.releaseScratch(scratch);
+		}
+	}
+	
+	@Override
+	public List<Guess> nextGuesses(List<? extends HangmanGame> games) {
+		CandidateSession[] sessions = new CandidateSession[games.size()];
+		Random rand = cursors.get().getRandom();
+		for (int i = 0; i < sessions.length; i++)
+		{
+			sessions[i] = new CandidateSession(this, games.get(i), rand);
+		}
+		Guess[] guesses = new Guess[sessions.length];
+		nextGuesses(sessions, sessions.length, guesses);
+		return Arrays.asList(guesses);
+	}
 	
 	/*
-	 * Find all the positions of mystery letters in the current game
-	 * @param current game board with missing letters
-	 * @param mystery letter symbol
-	 * @return an array of positions with missing letters
+	 * Guess for a batch of games, deciding every distinct game state once.
+	 * The games are grouped by the canonical key of their state; the first session of a group is
+	 * refined and scored, and every game of the group gets the same decision, with a word picked
+	 * by its own session's random source.  The other sessions of a group skip the refinement and
+	 * catch up on their next one, just like after a cached decision.  Games inside the opening
+	 * book are answered by the book and left out of the groups.
+	 * @param candidate sessions of the games, each game at most once
+	 * @param number of sessions to guess for
+	 * @param receives the guess of every session in input order, null when no word matches its game
 	 */
-	private static List<Integer> getEmptyLetterPositions(char[] wordGuessedSoFar, char mysteryLetter)
-	{
-		List<Integer> emptyList = new ArrayList<Integer>();
+	public void nextGuesses(CandidateSession[] sessions, int numSessions, Guess[] guesses) {
+		Map<String, Integer> groups = new HashMap<String, Integer>(numSessions * 2);
+		String[] groupKeys = new String[numSessions];
+		int[] groupLeaders = new int[numSessions];
+		int[] groupOf = new int[numSessions];
+		int numGroups = 0;
+		int numGrouped = 0;
+		OpeningBook book = openingBook;
+		for (int i = 0; i < numSessions; i++)
+		{
+			guesses[i] = (book != null) ? book.nextGuess(sessions[i].getGame()) : null;
+			if (guesses[i] != null)
+			{
+				//Answered by the book, in no group
+				groupOf[i] = -1;
+				continue;
+			}
+			numGrouped++;
+			String key = DecisionCache.createKey(sessions[i].getGame());
+			Integer group = groups.get(key);
+			if (group == null || !sameSnapshot(sessions[groupLeaders[group]], sessions[i]))
+			{
+				//A game that started on another version of the index is decided on its own
+				group = numGroups++;
+				if (!groups.containsKey(key))
+				{
+					groups.put(key, group);
+				}
+				groupKeys[group] = key;
+				groupLeaders[group] = i;
+			}
+			groupOf[i] = group;
+		}
+		batchedGuesses.add(numGrouped);
+		batchedStates.add(numGroups);
 		
-		for (int i = 0; i < wordGuessedSoFar.length; i++)
+		DecisionCache.Decision[] decisions = new DecisionCache.Decision[numGroups];
+		StrategyCursor cursor = cursors.get();
+		ScoringScratch scratch = cursor.acquireScratch();
+		try
 		{
-			if (wordGuessedSoFar[i] == mysteryLetter)
+			for (int group = 0; group < numGroups; group++)
 			{
-				emptyList.add(i);				
+				CandidateSession leader = sessions[groupLeaders[group]];
+				decisions[group] = decideState(leader.getGame(), leader, scratch, groupKeys[group]);
 			}
+		} finally
+		{
+			cursor.releaseScratch(scratch);
 		}
-		return emptyList;
+		
+		StrategyMetrics metrics = this.metrics;
+		for (int i = 0; i < numSessions; i++)
+		{
+			if (groupOf[i] < 0)
+			{
+				continue;
+			}
+			DecisionCache.Decision decision = decisions[groupOf[i]];
+			guesses[i] = (decision != null) ? decision.toGuess(sessions[i].getRandom()) : null;
+			if (metrics != null && decision != null && groupLeaders[groupOf[i]] != i)
+			{
+				//The followers of a group are answered like cached states
+				int wordLength = sessions[i].getGame().getSecretWordLength();
+				int candidatesBefore = (sessions[i].getWordCandidates() != null) ? sessions[i].getNumCandidates()
+						: getNumWords(wordLength);
+				metrics.recordGuess(wordLength, 0, 0, 0, candidatesBefore, decision.getNumCandidates(), 0, true);
+			}
+		}
+	}
+	
+	/*
+	 * @return true unless the sessions screen buckets of different versions of the index
+	 */
+	private static boolean sameSnapshot(CandidateSession a, CandidateSession b)
+	{
+		return a.getBucket() == null || b.getBucket() == null || a.getBucket() == b.getBucket();
 	}
 	
 	/*
-	 * Determine the remaining possible letters to make a guess 
-	 * @param list of all possible matching words
-	 * @param list of letter positions with missing letters
-	 * @param list of already guessed letters
-	 * @return a set of all possible guessing letters
+	 * @return number of guesses answered by nextGuesses from the dictionary
 	 */
-	private static Set<Character> getLetterCandidates(List<String> wordCandidates, List<Integer>emptyLetterPositions, Set<Character>allGuessedLetters)
+	public long getBatchedGuesses()
 	{
-		Set<Character> letterCandidates = new HashSet<Character>();
-		wordLoop: for (String word : wordCandidates)
+		return batchedGuesses.sum();
+	}
+	
+	/*
+	 * @return number of distinct game states decided by nextGuesses
+	 */
+	public long getBatchedStates()
+	{
+		return batchedStates.sum();
+	}
+	
+	/*
+	 * Answer a game state from the decision cache, or refine the session's candidates and decide
+	 * @param current game state
+	 * @param the candidate session of this game
+	 * @param buffers for scoring, owned by the calling thread
+	 * @param canonical key of the state, null to create it when there is a decision cache
+	 * @return the decision, null when no dictionary word matches the game
+	 */
+	private DecisionCache.Decision decideState(GameState game, CandidateSession session, ScoringScratch scratch,
+			String stateKey) {
+		StrategyEvents.DecisionEvent decisionEvent = new StrategyEvents.DecisionEvent();
+		decisionEvent.begin();
+		StrategyMetrics metrics = this.metrics;
+		long startTime = (metrics != null) ? System.nanoTime() : 0;
+		int candidatesBefore = (session.getWordCandidates() != null) ? session.getNumCandidates()
+				: getNumWords(game.getSecretWordLength());
+		//A game that started on an older version of the index neither reads nor adds the
+		//decisions of the current one
+		boolean current = session.getBucket() == null || index.isCurrent(game.getSecretWordLength(),
+				session.getBucket());
+		if (decisionCache != null && current)
 		{
-			for (int i : emptyLetterPositions)
-			{				
-				char currentChar = word.charAt(i);
-				//Skip if the letter has already been guessed
-				if (allGuessedLetters.contains(currentChar))
+			if (stateKey == null)
+			{
+				stateKey = DecisionCache.createKey(game);
+			}
+			DecisionCache.Decision cached = decisionCache.get(stateKey);
+			if (cached != null)
+			{
+				if (metrics != null)
 				{
-					continue;
+					metrics.recordGuess(game.getSecretWordLength(), System.nanoTime() - startTime, 0, 0,
+							candidatesBefore, cached.getNumCandidates(), 0, true);
 				}
-				letterCandidates.add(new Character(currentChar));
-				//Assuming words are all in English with only alphabet letters
-				if (letterCandidates.size() == 26)
+				if (decisionEvent.shouldCommit())
 				{
-					break wordLoop; 
+					decisionEvent.wordLength = game.getSecretWordLength();
+					decisionEvent.candidateCount = cached.getNumCandidates();
+					decisionEvent.guessType = cached.isLetter() ? StrategyEvents.GUESS_LETTER : StrategyEvents.GUESS_WORD;
+					decisionEvent.entropy = Double.NaN;
+					decisionEvent.cached = true;
+					decisionEvent.commit();
 				}
+				//The session catches up with the skipped guesses on its next refinement
+				return cached;
 			}
 		}
-		return letterCandidates;
-	}
-
-	@Override
-	public Guess nextGuess(HangmanGame game) {
-		//find the list of remaining possible word answers
-		List<String> wordCandidates = screenWordCandidates(game);
 		
-		assert(wordCandidates.size() > 0);
+		StrategyEvents.ScreeningEvent screeningEvent = new StrategyEvents.ScreeningEvent();
+		screeningEvent.begin();
+		session.refine();
+		if (screeningEvent.shouldCommit())
+		{
+			screeningEvent.wordLength = game.getSecretWordLength();
+			screeningEvent.candidatesBefore = candidatesBefore;
+			screeningEvent.candidatesAfter = session.getNumCandidates();
+			screeningEvent.commit();
+		}
+		if (session.getNumCandidates() == 0)
+		{
+			return null;
+		}
+		long screenedTime = (metrics != null) ? System.nanoTime() : 0;
+		StrategyEvents.ScoringEvent scoringEvent = new StrategyEvents.ScoringEvent();
+		scoringEvent.begin();
+		DecisionCache.Decision decision = decide(session.getBoard(), session.getBucket(),
+				session.getWordCandidates(), session.getNumCandidates(), scratch);
+		if (scoringEvent.shouldCommit())
+		{
+			scoringEvent.wordLength = game.getSecretWordLength();
+			scoringEvent.candidateCount = session.getNumCandidates();
+			scoringEvent.lettersScored = scratch.getLettersScored();
+			scoringEvent.entropy = scratch.getEntropy();
+			scoringEvent.commit();
+		}
+		if (decisionCache != null && stateKey != null
+				&& index.isCurrent(game.getSecretWordLength(), session.getBucket()))
+		{
+			decisionCache.put(stateKey, decision);
+			//An update published since the check has swapped the index before invalidating the
+			//length, so checking again catches a put that came after its invalidation
+			if (!index.isCurrent(game.getSecretWordLength(), session.getBucket()))
+			{
+				decisionCache.remove(stateKey, decision);
+			}
+		}
+		if (metrics != null)
+		{
+			long endTime = System.nanoTime();
+			metrics.recordGuess(game.getSecretWordLength(), endTime - startTime, screenedTime - startTime,
+					endTime - screenedTime, candidatesBefore, session.getNumCandidates(),
+					scratch.getLettersScored(), false);
+		}
+		if (decisionEvent.shouldCommit())
+		{
+			decisionEvent.wordLength = game.getSecretWordLength();
+			decisionEvent.candidateCount = session.getNumCandidates();
+			decisionEvent.guessType = decision.isLetter() ? StrategyEvents.GUESS_LETTER : StrategyEvents.GUESS_WORD;
+			decisionEvent.entropy = scratch.getEntropy();
+			decisionEvent.commit();
+		}
+		return decision;
+	}
+	
+	/*
+	 * Pick the guess with the highest information content for a candidate set
+	 * @param current game board with correctly guessed letters in position
+	 * @param the bucket of the word length
+	 * @param bucket indexes of the remaining possible word answers, in dictionary order
+	 * @param number of remaining possible word answers
+	 * @param buffers for scoring, used by the calling thread only
+	 * @return the decision for the game board
+	 */
+	DecisionCache.Decision decide(char[] wordGuessedSoFar, WordBucket bucket, int[] wordCandidates,
+			int numCandidates, ScoringScratch scratch) {
+		assert(numCandidates > 0);
 		
 		//Guess word if there's only one to choose from
-		if (wordCandidates.size() == 1)
+		if (numCandidates == 1)
 		{
-			return new GuessWord(wordCandidates.get(0));
+			scratch.setLettersScored(0);
+			scratch.setEntropy(0);
+			return DecisionCache.Decision.word(bucket.getWords(wordCandidates, numCandidates), numCandidates);
 		}
 		
-		//Current game so far
-		char[] wordGuessedSoFar = game.getGuessedSoFar().toCharArray();
 		//Hangman game mystery character
 		char mysteryLetter = HangmanGame.MYSTERY_LETTER;
 		//Empty letter positions
-		List<Integer> emptyLetterPositions = getEmptyLetterPositions(wordGuessedSoFar, mysteryLetter);
-		//All guessed letters
-		Set<Character> allGuessedLetters = game.getAllGuessedLetters();
-		//Define the unique letters among the wordCandidates		
-		Set<Character> letterCandidates = getLetterCandidates(wordCandidates, emptyLetterPositions, allGuessedLetters);
+		int[] emptyLetterPositions = scratch.getEmptyLetterPositions();
+		int numEmpty = getEmptyLetterPositions(wordGuessedSoFar, mysteryLetter, emptyLetterPositions);
+		EntropySampler sampler = this.sampler;
+		if (sampler != null && sampler.applies(numCandidates))
+		{
+			int sampledLetter = sampler.chooseLetter(emptyLetterPositions, numEmpty, bucket.getLetterCodes(),
+					wordGuessedSoFar.length, wordCandidates, numCandidates, scratch);
+			if (sampledLetter >= 0)
+			{
+				return DecisionCache.Decision.letter((char) ('a' + sampledLetter), numCandidates);
+			}
+		}
+		//Count the reveal patterns of every letter in a single pass over the wordCandidates
+		PatternCounter[] counters = scratch.getPatternCounters();
+		int[] matchedWords = scratch.getMatchedWords();
+		clearPatternCounts(counters, matchedWords);
+		int letterCandidates;
+		if (scoringPool != null && numCandidates >= parallelThreshold)
+		{
+			//Count chunks of a large candidate set in parallel and merge them in chunk order
+			int chunkSize = Math.max(PatternCountTask.MIN_CHUNK_SIZE,
+					numCandidates / (scoringPool.getParallelism() * 4));
+			PatternCountTask task = new PatternCountTask(emptyLetterPositions, numEmpty, bucket.getLetterCodes(),
+					wordGuessedSoFar.length, wordCandidates, 0, numCandidates, chunkSize);
+			scoringPool.invoke(task);
+			letterCandidates = task.mergeInto(counters, matchedWords);
+		} else
+		{
+			letterCandidates = countPatterns(emptyLetterPositions, numEmpty, bucket.getLetterCodes(),
+					wordGuessedSoFar.length, wordCandidates, 0, numCandidates, scratch.getLetterMasks(), matchedWords,
+					counters);
+		}
+		addEmptyPatterns(letterCandidates, numCandidates, matchedWords, counters);
+		scratch.setLettersScored(Integer.bitCount(letterCandidates));
 		
 		//Calculate for the Maximum information score
 		//Letter:
 		double maxEntropy = Double.NEGATIVE_INFINITY; //A  constant holding the negative infinity of type double.
 		char maxChar = 0;
-		// Find the letter guess with highest information content
-		for (Character c : letterCandidates)
+		// Find the letter guess with highest information content, ties go to the earlier letter
+		for (int letter = 0; letter < WordBucket.ALPHABET_SIZE; letter++)
 		{
-			Map<String, List<String>> freqMap = buildFrequencyMap(c.charValue(), emptyLetterPositions, wordCandidates);
+			if ((letterCandidates & (1 << letter)) == 0)
+			{
+				continue;
+			}
 			//Entropy Calculation
-			double entropy = Entropy.calculateEntropy(freqMap, wordCandidates.size());
+			double entropy = Entropy.calculateEntropy(counters[letter], numCandidates);
 			
 			//Save the maximum entropy and the character
 			if (entropy > maxEntropy)
 			{ 
 				maxEntropy = entropy;
-				maxChar = c;
+				maxChar = (char) ('a' + letter);
 			}
 		}		
 		//Word: 
-		double maxWordEntropy = Entropy.calculateRandomSelectEntropy(wordCandidates.size());
+		double maxWordEntropy = Entropy.calculateRandomSelectEntropy(numCandidates);
 		
 		//Compare the max. entropy to randomly picking a word in the remaining word candidates  
+		scratch.setEntropy(Math.max(maxWordEntropy, maxEntropy));
 		if (maxWordEntropy >= maxEntropy)
 		{
 			//Pick any random word from the list
-			Random rand = new Random();
-			int i = rand.nextInt(wordCandidates.size());		
-			assert(i >= 0 && i < wordCandidates.size());
-			return new GuessWord(wordCandidates.get(i));
-		} else {			
-			return new GuessLetter(maxChar);
+			return DecisionCache.Decision.word(bucket.getWords(wordCandidates, numCandidates), numCandidates);
+		} else {
+			return DecisionCache.Decision.letter(maxChar, numCandidates);
 		}
 	}
 
 	/*
-	 * Create a hashtable for combinations of letter positions that matches the single alphabet
-	 * based on the remaining word candidates.  
-	 * @param alphabet to match
+	 * Reset the pattern counts of every letter
+	 * @param counters with the number of words per bitmask, one per letter
+	 * @param number of words containing each letter
+	 */
+	static void clearPatternCounts(PatternCounter[] counters, int[] matchedWords)
+	{
+		for (int letter = 0; letter < WordBucket.ALPHABET_SIZE; letter++)
+		{
+			counters[letter].clear();
+			matchedWords[letter] = 0;
+		}
+	}
+	
+	/*
+	 * Count the words of each combination of letter positions that matches each alphabet
+	 * based on a range of the remaining word candidates.  The combination is encoded as a bitmask
+	 * with bit i set when the alphabet is at position i of the word.  Every word is visited once
+	 * and updates the counters of all the letters in its mystery positions together; the words
+	 * without a letter are left for addEmptyPatterns.
 	 * @param positions of mystery letters
-	 * @param a list of word candidates
-	 * @return a hashtable of lists of words that correspond to the combination of matching letter
-	 * positions 
-	 */
-	private Map<String, List<String>> buildFrequencyMap(char c, List<Integer> emptyLetterPositions, List<String>wordCandidates) {
-		//A hashTable to count the number of occurrence for each guessing letter
-		Map<String, List<String>> freqMap = new HashMap<String, List<String>>();
-		for (String word : wordCandidates)
+	 * @param number of positions of mystery letters
+	 * @param letter codes of the bucket
+	 * @param length of the words
+	 * @param bucket indexes of the word candidates
+	 * @param index of the first word candidate to count
+	 * @param index after the last word candidate to count
+	 * @param scratch array with one bitmask per letter
+	 * @param number of words containing each letter, added to
+	 * @param counters with the number of words per bitmask, one per letter, added to
+	 * @return a bitmask of all the letters found, bit 0 for 'a'
+	 */
+	static int countPatterns(int[] emptyLetterPositions, int numEmpty, byte[] letters, int wordLength,
+			int[] wordCandidates, int from, int to, int[] letterMasks, int[] matchedWords, PatternCounter[] counters) {
+		int letterCandidates = 0;
+		for (int w = from; w < to; w++)
 		{
-			//Create groups of word candidates and index them by a unique hashkey
-			String mapKey = createMapKey(c, word, emptyLetterPositions);
-			
-			if (freqMap.containsKey(mapKey)) 
+			int offset = wordCandidates[w] * wordLength;
+			//Letters found in the mystery positions of this word
+			int wordLetters = 0;
+			for (int i = 0; i < numEmpty; i++)
 			{
-				freqMap.get(mapKey).add(word);
-			} else {
-				List<String> newMapValue = new LinkedList<String>();
-				newMapValue.add(word);
-				freqMap.put(mapKey, newMapValue);
-			}			
-		}		
-		
-		return freqMap;
+				int position = emptyLetterPositions[i];
+				int letter = letters[offset + position];
+				int letterBit = 1 << letter;
+				if ((wordLetters & letterBit) == 0)
+				{
+					wordLetters |= letterBit;
+					letterMasks[letter] = 0;
+				}
+				letterMasks[letter] |= 1 << position;
+			}
+			letterCandidates |= wordLetters;
+			while (wordLetters != 0)
+			{
+				int letter = Integer.numberOfTrailingZeros(wordLetters);
+				wordLetters &= wordLetters - 1;
+				counters[letter].increment(letterMasks[letter]);
+				matchedWords[letter]++;
+			}
+		}
+		return letterCandidates;
 	}
-
+	
 	/*
-	 * Create the signature for the combination of letter positions that matches the single
-	 * alphabet for each word.  A helper function to method buildFrequencyMap.
-	 * Each unique signature represents a signal state for the guessing letter.
-	 * @param alphabet to match
-	 * @param the current word under examination
-	 * @param positions of mystery letters
-	 * @return a signature based on the matching alphabet  
-	 */
-	private String createMapKey(char c, String word, List<Integer>emptyLetterPositions) {
-		//Only go through the letter positions with missing letters
-		char[] keyCharArray = new char[emptyLetterPositions.size()];
-		int index = 0;
-		//Create a unique hash key based on matching letters
-		for (int i : emptyLetterPositions)
-		{				
-			if (c == word.charAt(i))
+	 * Words without a letter share the empty pattern of that letter
+	 * @param bitmask of all possible guessing letters
+	 * @param number of word candidates
+	 * @param number of words containing each letter
+	 * @param counters with the number of words per bitmask, one per letter
+	 */
+	static void addEmptyPatterns(int letterCandidates, int numCandidates, int[] matchedWords,
+			PatternCounter[] counters) {
+		for (int letter = 0; letter < WordBucket.ALPHABET_SIZE; letter++)
+		{
+			int unmatched = numCandidates - matchedWords[letter];
+			if ((letterCandidates & (1 << letter)) != 0 && unmatched > 0)
 			{
-				keyCharArray[index] = c;
-			} else {
-				keyCharArray[index] = '_';
+				counters[letter].add(0, unmatched);
 			}
-			index++;
 		}
-		String mapKey = new String(keyCharArray);
-		return mapKey;
 	}
 
 }
@@ -0,0 +1,316 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Load generator for HangmanServer.
+ * Every connection plays complete games of random dictionary words against the server: it sends
+ * the state of its game, applies the guess it gets back and repeats until the game ends, so the
+ * requests have the mix of board states of real games.  The round trip of every request is
+ * timed, and at the end the latency percentiles, the requests and games per second and the
+ * score of the games are printed.  Warm-up games are played first on every connection and are
+ * not measured.
+ * Arguments: [dictionary file] [-host h] [-port n] [-connections n] [-games n] [-warmup n] [-seed n]
+ */
+public class HangmanLoadGenerator {
+
+	private static final int MAX_WRONG_GUESSES = 5;
+
+	private final String host;
+	private final int port;
+	private final List<String> words;
+	private final long seed;
+
+	/*
+	 * @param host of the server
+	 * @param port of the server
+	 * @param words to pick the secret words from
+	 * @param seed of the secret words
+	 */
+	public HangmanLoadGenerator(String host, int port, List<String> words, long seed)
+	{
+		this.host = host;
+		this.port = port;
+		this.words = words;
+		this.seed = seed;
+	}
+
+	/*
+	 * Play games on parallel connections
+	 * @param number of connections
+	 * @param measured games per connection
+	 * @param warm-up games per connection
+	 * @return the results of every connection
+	 */
+	public List<ConnectionResult> run(int numConnections, final int numGames, final int numWarmupGames)
+			throws IOException, InterruptedException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(numConnections);
+		try
+		{
+			List<Future<ConnectionResult>> futures = new ArrayList<Future<ConnectionResult>>();
+			for (int c = 0; c < numConnections; c++)
+			{
+				final long connectionSeed = seed + c;
+				futures.add(executor.submit(new Callable<ConnectionResult>() {
+					@Override
+					public ConnectionResult call() throws IOException
+					{
+						return playConnection(new Random(connectionSeed), numGames, numWarmupGames);
+					}
+				}));
+			}
+			List<ConnectionResult> results = new ArrayList<ConnectionResult>();
+			for (Future<ConnectionResult> future : futures)
+			{
+				results.add(future.get());
+			}
+			return results;
+		} catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof IOException)
+			{
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException("Connection failed", e.getCause());
+		} finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * @param source of the secret words of the connection
+	 * @param measured games
+	 * @param warm-up games
+	 * @return the measurements of the connection
+	 */
+	private ConnectionResult playConnection(Random random, int numGames, int numWarmupGames) throws IOException
+	{
+		Socket socket = new Socket(host, port);
+		try
+		{
+			socket.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "US-ASCII"));
+			ConnectionResult warmup = new ConnectionResult();
+			for (int g = 0; g < numWarmupGames; g++)
+			{
+				playGame(words.get(random.nextInt(words.size())), in, out, warmup);
+			}
+			ConnectionResult result = new ConnectionResult();
+			result.startNanos = System.nanoTime();
+			for (int g = 0; g < numGames; g++)
+			{
+				playGame(words.get(random.nextInt(words.size())), in, out, result);
+			}
+			result.endNanos = System.nanoTime();
+			out.write("QUIT\n");
+			out.flush();
+			return result;
+		} finally
+		{
+			socket.close();
+		}
+	}
+
+	/*
+	 * Play one game with the guesses of the server
+	 * @param secret word
+	 * @param connection to the server
+	 * @param measurements to add to
+	 */
+	private static void playGame(String word, BufferedReader in, Writer out, ConnectionResult result)
+			throws IOException
+	{
+		HangmanGame game = new HangmanGame(word, MAX_WRONG_GUESSES);
+		StringBuilder request = new StringBuilder();
+		while (game.gameStatus() == HangmanGame.Status.KEEP_GUESSING)
+		{
+			request.setLength(0);
+			request.append("GUESS ").append(game.getGuessedSoFar()).append(' ');
+			int guessedLetterMask = game.getGuessedLetterMask();
+			if (guessedLetterMask == 0)
+			{
+				request.append(HangmanGame.MYSTERY_LETTER);
+			}
+			for (int bits = guessedLetterMask; bits != 0; bits &= bits - 1)
+			{
+				request.append((char) ('A' + Integer.numberOfTrailingZeros(bits)));
+			}
+			for (String wrongWord : game.getIncorrectlyGuessedWords())
+			{
+				request.append(' ').append(wrongWord);
+			}
+			request.append('\n');
+
+			long start = System.nanoTime();
+			out.write(request.toString());
+			out.flush();
+			String answer = in.readLine();
+			result.addLatency(System.nanoTime() - start);
+			if (answer == null)
+			{
+				throw new IOException("Server closed the connection");
+			}
+			if (answer.startsWith("LETTER "))
+			{
+				game.guessLetter(answer.charAt(7));
+			} else if (answer.startsWith("WORD "))
+			{
+				game.guessWord(answer.substring(5));
+			} else
+			{
+				result.failures++;
+				return;
+			}
+		}
+		result.games++;
+		if (game.gameStatus() == HangmanGame.Status.GAME_WON)
+		{
+			result.gamesWon++;
+		}
+		result.score += game.currentScore();
+	}
+
+	/*
+	 * Print the totals of all connections
+	 * @param results of every connection
+	 */
+	public static void printSummary(List<ConnectionResult> results)
+	{
+		long games = 0;
+		long gamesWon = 0;
+		long score = 0;
+		long failures = 0;
+		int numLatencies = 0;
+		long startNanos = Long.MAX_VALUE;
+		long endNanos = Long.MIN_VALUE;
+		for (ConnectionResult result : results)
+		{
+			games += result.games;
+			gamesWon += result.gamesWon;
+			score += result.score;
+			failures += result.failures;
+			numLatencies += result.numLatencies;
+			startNanos = Math.min(startNanos, result.startNanos);
+			endNanos = Math.max(endNanos, result.endNanos);
+		}
+		long[] latencies = new long[numLatencies];
+		int offset = 0;
+		for (ConnectionResult result : results)
+		{
+			System.arraycopy(result.latencies, 0, latencies, offset, result.numLatencies);
+			offset += result.numLatencies;
+		}
+		Arrays.sort(latencies);
+		double seconds = Math.max(1, endNanos - startNanos) / 1e9;
+		long totalLatency = 0;
+		for (long latency : latencies)
+		{
+			totalLatency += latency;
+		}
+		System.out.printf("Connections: %d, Requests: %d, Games: %d (won %d), Failed games: %d, Total Score: %d%n",
+				results.size(), numLatencies, games, gamesWon, failures, score);
+		System.out.printf("Throughput: %.1f requests/s, %.1f games/s over %.2f s%n", numLatencies / seconds,
+				games / seconds, seconds);
+		if (numLatencies > 0)
+		{
+			System.out.printf("Latency (us): mean=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+					totalLatency / 1000.0 / numLatencies, percentile(latencies, 0.50) / 1000.0,
+					percentile(latencies, 0.90) / 1000.0, percentile(latencies, 0.99) / 1000.0,
+					percentile(latencies, 0.999) / 1000.0, latencies[numLatencies - 1] / 1000.0);
+		}
+	}
+
+	/*
+	 * @param sorted values
+	 * @param fraction from 0 to 1
+	 * @return the nearest-rank percentile
+	 */
+	private static long percentile(long[] sorted, double fraction)
+	{
+		int rank = (int) Math.ceil(fraction * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+	}
+
+	/*
+	 * The measurements of one connection
+	 */
+	public static class ConnectionResult {
+		private long[] latencies = new long[1024];
+		private int numLatencies;
+		private long games;
+		private long gamesWon;
+		private long score;
+		private long failures;
+		private long startNanos;
+		private long endNanos;
+
+		private void addLatency(long nanos)
+		{
+			if (numLatencies == latencies.length)
+			{
+				latencies = Arrays.copyOf(latencies, latencies.length * 2);
+			}
+			latencies[numLatencies++] = nanos;
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		String wordListFileName = "words.txt";
+		String host = "localhost";
+		int port = HangmanServer.DEFAULT_PORT;
+		int numConnections = 4;
+		int numGames = 200;
+		int numWarmupGames = 20;
+		long seed = 1;
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-host") && i + 1 < args.length)
+			{
+				host = args[++i];
+			} else if (args[i].equals("-port") && i + 1 < args.length)
+			{
+				port = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-connections") && i + 1 < args.length)
+			{
+				numConnections = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-games") && i + 1 < args.length)
+			{
+				numGames = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-warmup") && i + 1 < args.length)
+			{
+				numWarmupGames = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-seed") && i + 1 < args.length)
+			{
+				seed = Long.parseLong(args[++i]);
+			} else if (args[i].startsWith("-"))
+			{
+				System.out.println("Usage: java HangmanLoadGenerator [words.txt] [-host h] [-port n] [-connections n]"
+						+ " [-games n] [-warmup n] [-seed n]");
+				return;
+			} else
+			{
+				wordListFileName = args[i];
+			}
+		}
+		List<String> words = FileScanner.readLinesFromFile(wordListFileName);
+		HangmanLoadGenerator generator = new HangmanLoadGenerator(host, port, words, seed);
+		printSummary(generator.run(numConnections, numGames, numWarmupGames));
+	}
+}
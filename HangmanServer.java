@@ -0,0 +1,410 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Serves guesses to other processes over a line based TCP protocol on the loopback interface,
+ * so the dictionary and the strategy are loaded once for any number of games.
+ * Every request is one line and gets exactly one answer line:
+ *   GUESS <pattern> [<guessed letters> [<wrong word> ...]]
+ *              the pattern has MYSTERY_LETTER for unknown letters and its length is the length of
+ *              the secret word; guessed letters are written together, or as - for none
+ *   PING       answered with PONG
+ *   ADD <word> ...     add the words to the dictionary, which takes words of the letters a to z
+ *                      and at most ScoringScratch.MAX_WORD_LENGTH letters; any other word is
+ *                      answered with ERROR and no word is added
+ *   REMOVE <word> ...  remove the words from the dictionary
+ *   RELOAD     read the dictionary file again
+ *              the three are answered with UPDATED <number of word lengths that changed>
+ *   QUIT       answered with BYE, then the connection is closed
+ * A guess is answered with LETTER <letter>, WORD <word>, NONE when no dictionary word matches
+ * the state, or ERROR <message> for a malformed request.  Letters and words are upper case in
+ * answers and any case in requests.  A connection may send any number of requests.
+ * The server keeps nothing between requests: an empty board gets the console's opening letter
+ * of its length, every other state is screened and scored by the shared strategy, which picks
+ * words with the random source of the connection's thread.  Dictionary updates take effect for
+ * the next request on every connection, requests being answered keep the words they started with.
+ * Each connection runs on a virtual thread where the runtime has them (Java 21), found by
+ * reflection so the server still runs on older runtimes, where it uses a cached thread pool.
+ */
+public class HangmanServer {
+
+	public static final int DEFAULT_PORT = 7654;
+
+	private final HangmanGameConsole console;
+	private final HangmanGuessingStrategy strategy;
+	private final ServerSocket serverSocket;
+	private final ExecutorService connections;
+	private final boolean virtualThreads;
+
+	private final LongAdder numConnections = new LongAdder();
+	private final LongAdder numRequests = new LongAdder();
+
+	/*
+	 * @param console with the opening letters of every word length
+	 * @param strategy answering the guesses, shared by all connections
+	 * @param port to listen on, 0 for any free port
+	 */
+	public HangmanServer(HangmanGameConsole console, HangmanGuessingStrategy strategy, int port) throws IOException
+	{
+		this.console = console;
+		this.strategy = strategy;
+		this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+		ExecutorService virtualExecutor = newVirtualThreadExecutor();
+		this.virtualThreads = virtualExecutor != null;
+		this.connections = virtualThreads ? virtualExecutor : Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "hangman-connection-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/*
+	 * @return an executor starting a virtual thread per task, null if the runtime has none
+	 */
+	private static ExecutorService newVirtualThreadExecutor()
+	{
+		try
+		{
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e)
+		{
+			//Missing before Java 19, and a preview feature that is switched off until Java 21
+			return null;
+		} catch (UnsupportedOperationException e)
+		{
+			return null;
+		}
+	}
+
+	/*
+	 * @return the port the server listens on
+	 */
+	public int getPort()
+	{
+		return serverSocket.getLocalPort();
+	}
+
+	/*
+	 * @return true if connections run on virtual threads, false if on a thread pool
+	 */
+	public boolean usesVirtualThreads()
+	{
+		return virtualThreads;
+	}
+
+	public long getNumConnections()
+	{
+		return numConnections.sum();
+	}
+
+	public long getNumRequests()
+	{
+		return numRequests.sum();
+	}
+
+	/*
+	 * Accept connections until the server is closed
+	 */
+	public void serve() throws IOException
+	{
+		try
+		{
+			while (true)
+			{
+				final Socket socket;
+				try
+				{
+					socket = serverSocket.accept();
+				} catch (SocketException e)
+				{
+					if (serverSocket.isClosed())
+					{
+						return;
+					}
+					throw e;
+				}
+				numConnections.increment();
+				connections.execute(new Runnable() {
+					@Override
+					public void run()
+					{
+						handle(socket);
+					}
+				});
+			}
+		} finally
+		{
+			connections.shutdown();
+		}
+	}
+
+	/*
+	 * Stop accepting connections; open connections end when their clients close them
+	 */
+	public void close() throws IOException
+	{
+		serverSocket.close();
+	}
+
+	/*
+	 * Answer the requests of one connection until the client quits or closes it
+	 * @param connected socket
+	 */
+	private void handle(Socket socket)
+	{
+		try
+		{
+			socket.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "US-ASCII"));
+			String line;
+			while ((line = in.readLine()) != null)
+			{
+				numRequests.increment();
+				String request = line.trim();
+				boolean quit = request.equalsIgnoreCase("QUIT");
+				out.write(quit ? "BYE" : answer(request));
+				out.write('\n');
+				//Flush once the client has no more pipelined requests waiting
+				if (quit || !in.ready())
+				{
+					out.flush();
+				}
+				if (quit)
+				{
+					break;
+				}
+			}
+		} catch (IOException e)
+		{
+			//The client went away, nothing to answer
+		} finally
+		{
+			try
+			{
+				socket.close();
+			} catch (IOException e)
+			{
+				//Already closed
+			}
+		}
+	}
+
+	/*
+	 * @param one request line
+	 * @return the answer line
+	 */
+	String answer(String request)
+	{
+		String[] tokens = request.split("\\s+");
+		String command = tokens[0].toUpperCase();
+		if (command.equals("PING"))
+		{
+			return "PONG";
+		}
+		if (command.equals("ADD") || command.equals("REMOVE"))
+		{
+			if (tokens.length < 2)
+			{
+				return "ERROR missing words";
+			}
+			List<String> words = Arrays.asList(tokens).subList(1, tokens.length);
+			try
+			{
+				Set<Integer> changed = command.equals("ADD") ? console.updateDictionary(words, null)
+						: console.updateDictionary(null, words);
+				return "UPDATED " + changed.size();
+			} catch (IllegalArgumentException e)
+			{
+				//A word the dictionary can not hold, nothing was changed
+				return "ERROR " + e.getMessage();
+			}
+		}
+		if (command.equals("RELOAD"))
+		{
+			try
+			{
+				return "UPDATED " + console.reloadDictionary().size();
+			} catch (IOException e)
+			{
+				return "ERROR " + e.getMessage();
+			} catch (IllegalStateException e)
+			{
+				//The file now has a word the dictionary can not hold, the old words stay
+				return "ERROR " + e.getMessage();
+			}
+		}
+		if (!command.equals("GUESS"))
+		{
+			return "ERROR unknown command: " + tokens[0];
+		}
+		Request state;
+		try
+		{
+			state = Request.parse(tokens);
+		} catch (IllegalArgumentException e)
+		{
+			return "ERROR " + e.getMessage();
+		}
+		int wordLength = state.getSecretWordLength();
+		if (strategy.getNumWords(wordLength) == 0)
+		{
+			return "NONE";
+		}
+		if (state.getGuessedLetterMask() == 0 && state.getNumIncorrectlyGuessedWords() == 0)
+		{
+			return "LETTER " + Character.toUpperCase(console.getOpeningLetter(wordLength));
+		}
+		Guess guess = strategy.nextGuess(state);
+		if (guess instanceof GuessLetter)
+		{
+			return "LETTER " + Character.toUpperCase(((GuessLetter) guess).getLetter());
+		}
+		if (guess instanceof GuessWord)
+		{
+			return "WORD " + ((GuessWord) guess).getWord().toUpperCase();
+		}
+		return "NONE";
+	}
+
+	/*
+	 * The game state sent with a GUESS request
+	 */
+	static class Request implements GameState {
+		private final char[] board;
+		private final String guessedSoFar;
+		private final int guessedLetterMask;
+		private final Set<String> incorrectlyGuessedWords;
+
+		private Request(char[] board, int guessedLetterMask, Set<String> incorrectlyGuessedWords)
+		{
+			this.board = board;
+			this.guessedSoFar = new String(board);
+			this.guessedLetterMask = guessedLetterMask;
+			this.incorrectlyGuessedWords = incorrectlyGuessedWords;
+		}
+
+		/*
+		 * @param tokens of the request line, GUESS first
+		 * @return the state of the request
+		 * @throws IllegalArgumentException when the state is malformed
+		 */
+		static Request parse(String[] tokens)
+		{
+			if (tokens.length < 2)
+			{
+				throw new IllegalArgumentException("missing pattern");
+			}
+			char mysteryLetter = HangmanGame.MYSTERY_LETTER;
+			char[] board = tokens[1].toUpperCase().toCharArray();
+			if (board.length > ScoringScratch.MAX_WORD_LENGTH)
+			{
+				throw new IllegalArgumentException("pattern longer than " + ScoringScratch.MAX_WORD_LENGTH);
+			}
+			int guessedLetterMask = 0;
+			boolean mysteryLeft = false;
+			for (char c : board)
+			{
+				if (c == mysteryLetter)
+				{
+					mysteryLeft = true;
+					continue;
+				}
+				int bit = HangmanGame.letterBit(c);
+				if (bit == 0)
+				{
+					throw new IllegalArgumentException("not a letter in pattern: " + c);
+				}
+				//A revealed letter has been guessed
+				guessedLetterMask |= bit;
+			}
+			if (!mysteryLeft)
+			{
+				throw new IllegalArgumentException("nothing left to guess");
+			}
+			if (tokens.length > 2 && !tokens[2].equals(String.valueOf(mysteryLetter)))
+			{
+				for (char c : tokens[2].toCharArray())
+				{
+					int bit = HangmanGame.letterBit(c);
+					if (bit == 0)
+					{
+						throw new IllegalArgumentException("not a letter in guessed letters: " + c);
+					}
+					guessedLetterMask |= bit;
+				}
+			}
+			Set<String> incorrectlyGuessedWords = Collections.emptySet();
+			if (tokens.length > 3)
+			{
+				incorrectlyGuessedWords = new LinkedHashSet<String>();
+				for (int i = 3; i < tokens.length; i++)
+				{
+					incorrectlyGuessedWords.add(tokens[i].toUpperCase());
+				}
+			}
+			return new Request(board, guessedLetterMask, incorrectlyGuessedWords);
+		}
+
+		public int getSecretWordLength()
+		{
+			return board.length;
+		}
+
+		public String getGuessedSoFar()
+		{
+			return guessedSoFar;
+		}
+
+		public char getGuessedSoFarAt(int position)
+		{
+			return board[position];
+		}
+
+		public void copyGuessedSoFar(char[] target)
+		{
+			System.arraycopy(board, 0, target, 0, board.length);
+		}
+
+		public int getGuessedLetterMask()
+		{
+			return guessedLetterMask;
+		}
+
+		public int getNumIncorrectlyGuessedWords()
+		{
+			return incorrectlyGuessedWords.size();
+		}
+
+		public Set<String> getIncorrectlyGuessedWords()
+		{
+			return incorrectlyGuessedWords;
+		}
+	}
+}
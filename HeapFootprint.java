@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Reports the heap taken by the dictionary words in two representations:
+ *   strings  the word list of the console plus a LinkedList of Strings per length, as the
+ *            strategy used to hold them
+ *   packed   one PackedWordStore per length, a single byte array of letter codes each
+ * Each figure is the growth of the used heap after a full collection, so it includes every
+ * object header, array and list node.  The bitset index of every length is reported too,
+ * computed from the size of its posting lists.
+ * Arguments: [dictionary file]
+ */
+public class HeapFootprint {
+
+	public static void main(String[] args) throws IOException
+	{
+		String wordListFileName = (args.length > 0) ? args[0] : "words.txt";
+
+		long baseline = usedHeap();
+		List<String> words = FileScanner.readLinesFromFile(wordListFileName);
+		Map<Integer, List<String>> stringsByLength = new HashMap<Integer, List<String>>();
+		for (String word : words)
+		{
+			List<String> group = stringsByLength.get(word.length());
+			if (group == null)
+			{
+				group = new LinkedList<String>();
+				stringsByLength.put(word.length(), group);
+			}
+			group.add(word);
+		}
+		long stringBytes = usedHeap() - baseline;
+		int numWords = words.size();
+
+		//Pack the words while the strings are still held, so only the stores are measured
+		baseline = usedHeap();
+		Map<Integer, PackedWordStore> stores = new TreeMap<Integer, PackedWordStore>();
+		for (Map.Entry<Integer, List<String>> entry : stringsByLength.entrySet())
+		{
+			stores.put(entry.getKey(), new PackedWordStore(entry.getKey(), entry.getValue()));
+		}
+		long packedBytes = usedHeap() - baseline;
+		//Keep the strings reachable up to here
+		if (words.size() != numWords || stringsByLength.size() != stores.size())
+		{
+			throw new IllegalStateException("Word list changed while measuring");
+		}
+
+		System.out.println("Length    Words  Letters(bytes)  Index(bytes)");
+		long letterBytes = 0;
+		long indexBytes = 0;
+		for (PackedWordStore store : stores.values())
+		{
+			int numLongs = (store.size() + 63) >>> 6;
+			long postings = 8L * numLongs * WordBucket.ALPHABET_SIZE * (store.getWordLength() + 1);
+			System.out.printf("%6d %8d %15d %13d%n", store.getWordLength(), store.size(), store.getLetterCodes().length,
+					postings);
+			letterBytes += store.getLetterCodes().length;
+			indexBytes += postings;
+		}
+		System.out.println("------------------------");
+		System.out.printf("Strings: %d bytes, %.1f bytes per word%n", stringBytes, (double) stringBytes / numWords);
+		System.out.printf("Packed:  %d bytes measured, %d bytes of letter codes, %.1f bytes per word%n", packedBytes,
+				letterBytes, (double) packedBytes / numWords);
+		System.out.printf("Bitset index: %d bytes%n", indexBytes);
+	}
+
+	/*
+	 * @return the used heap after collecting until it stops shrinking
+	 */
+	private static long usedHeap()
+	{
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++)
+		{
+			System.gc();
+			long now = memory.getHeapMemoryUsage().getUsed();
+			if (now >= used)
+			{
+				break;
+			}
+			used = now;
+		}
+		return used;
+	}
+}
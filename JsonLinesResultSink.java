@@ -0,0 +1,79 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/*
+ * Writes one JSON object per line and game:
+ *   {"game":1,"secretWord":"MAXIS","finalPattern":"-A--S","score":25,"status":"GAME_LOST",
+ *    "guesses":["E","S","A"],"latencyNanos":152000}
+ */
+public class JsonLinesResultSink implements ResultSink {
+
+	private final Writer out;
+
+	/*
+	 * @param buffered writer to write to, closed with the sink
+	 */
+	public JsonLinesResultSink(Writer out)
+	{
+		this.out = out;
+	}
+
+	@Override
+	public void write(GameRecord record) throws IOException
+	{
+		StringBuilder line = new StringBuilder(128);
+		line.append("{\"game\":").append(record.getGameNumber());
+		line.append(",\"secretWord\":");
+		appendString(line, record.getSecretWord());
+		line.append(",\"finalPattern\":");
+		appendString(line, record.getFinalPattern());
+		line.append(",\"score\":").append(record.getScore());
+		line.append(",\"status\":");
+		appendString(line, record.getStatus().name());
+		line.append(",\"guesses\":[");
+		boolean first = true;
+		for (String guess : record.getGuesses())
+		{
+			if (!first)
+			{
+				line.append(',');
+			}
+			appendString(line, guess);
+			first = false;
+		}
+		line.append("],\"latencyNanos\":").append(record.getLatencyNanos()).append("}\n");
+		out.write(line.toString());
+	}
+
+	private static void appendString(StringBuilder line, String value)
+	{
+		line.append('"');
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+			{
+				line.append('\\').append(c);
+			} else if (c < ' ')
+			{
+				line.append(String.format("\\u%04x", (int) c));
+			} else
+			{
+				line.append(c);
+			}
+		}
+		line.append('"');
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		out.close();
+	}
+}
@@ -0,0 +1,572 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Guesses by searching a few guesses ahead for the lowest expected final score, within a time
+ * budget per guess.
+ * The greedy entropy guess of the wrapped strategy is taken first and is the answer unless a
+ * search finishes in time.  The search then deepens one guess at a time: a search of depth d
+ * plays out every outcome of up to d guesses over the partitions of the candidates by reveal
+ * pattern (see HangmanGuessingStrategy.countPatterns), weighting each outcome by its share of
+ * the candidates, and estimates the score still to come where it stops.  Every node tries the
+ * letters of the highest entropy and a word guess.  The answer is the best guess of the deepest
+ * search that finished before the deadline; a search that runs out of time is abandoned.
+ * Positions reached by different orders of guesses are evaluated once per search.
+ * The scores follow HangmanGame.currentScore: every letter guess and wrong word guess costs a
+ * point, and a lost game scores LOST_SCORE.
+ * Which depth a guess reaches depends on the speed of the machine, so runs with a seed are only
+ * repeatable while every search finishes within the budget, and while each game guesses through
+ * its own session (see newSession) rather than with the random source of the calling thread.
+ * The strategy keeps no state between guesses and can be shared by any number of games and threads.
+ */
+public class LookaheadGuessingStrategy implements GuessingStrategy {
+
+	//Time budget of a guess unless given
+	public static final long DEFAULT_BUDGET_NANOS = 5000000L;
+	//Deepest search unless given
+	public static final int DEFAULT_MAX_DEPTH = 4;
+	//Letters tried at every node unless given
+	public static final int DEFAULT_BRANCHING = 4;
+
+	//Expected further score per bit of uncertainty left where a search stops, the best of
+	//0.6 to 1.5 on random games of words.txt
+	static final double SCORE_PER_BIT = 0.8;
+	//Score of a lost game, see HangmanGame.currentScore
+	static final int LOST_SCORE = 25;
+
+	//Thrown to abandon a search at its deadline, preallocated since it carries no stack
+	private static final SearchTimeout TIMEOUT = new SearchTimeout();
+
+	private final HangmanGuessingStrategy greedy;
+	private final long budgetNanos;
+	private final int maxDepth;
+	private final int branching;
+
+	private final LongAdder guesses = new LongAdder();
+	private final LongAdder fallbacks = new LongAdder();
+	private final LongAdder changedGuesses = new LongAdder();
+	private final LongAdder searchNodes = new LongAdder();
+	//Number of guesses by the deepest search finished, index 1 for the greedy guess alone
+	private final AtomicLongArray depthCounts;
+
+	/*
+	 * @param strategy giving the candidates and the greedy guess
+	 */
+	public LookaheadGuessingStrategy(HangmanGuessingStrategy greedy)
+	{
+		this(greedy, DEFAULT_BUDGET_NANOS, DEFAULT_MAX_DEPTH, DEFAULT_BRANCHING);
+	}
+
+	/*
+	 * @param strategy giving the candidates and the greedy guess
+	 * @param time budget of a guess in nanoseconds
+	 * @param deepest search, in guesses
+	 * @param number of letters tried at every node
+	 */
+	public LookaheadGuessingStrategy(HangmanGuessingStrategy greedy, long budgetNanos, int maxDepth, int branching)
+	{
+		if (maxDepth < 1 || branching < 1)
+		{
+			throw new IllegalArgumentException("Depth and branching must be positive");
+		}
+		this.greedy = greedy;
+		this.budgetNanos = budgetNanos;
+		this.maxDepth = maxDepth;
+		this.branching = branching;
+		this.depthCounts = new AtomicLongArray(maxDepth + 1);
+	}
+
+	@Override
+	public Guess nextGuess(HangmanGame game) {
+		//Screen the whole length bucket and pick words with the random source of the calling thread
+		return nextGuess(game, new CandidateSession(greedy, game, greedy.getCursor().getRandom()));
+	}
+
+	/*
+	 * Start a search session for a single game, keeping the game's candidates between the
+	 * greedy guesses and picking words with the given random source
+	 * @param current game state
+	 * @param random source of the game
+	 * @return a strategy that answers nextGuess for this game only
+	 */
+	public GuessingStrategy newSession(final HangmanGame game, Random rand)
+	{
+		final CandidateSession session = greedy.newSession(game, rand);
+		return new GuessingStrategy() {
+			@Override
+			public Guess nextGuess(HangmanGame sessionGame) {
+				if (sessionGame != game)
+				{
+					throw new IllegalArgumentException("Lookahead session belongs to another game");
+				}
+				return LookaheadGuessingStrategy.this.nextGuess(game, session);
+			}
+		};
+	}
+
+	/*
+	 * @param current game state
+	 * @param the candidate session giving the greedy guess and the random source of word picks
+	 * @return the next guess
+	 */
+	private Guess nextGuess(HangmanGame game, CandidateSession session) {
+		long deadline = System.nanoTime() + budgetNanos;
+		Guess greedyGuess = greedy.nextGuess(game, session);
+		guesses.increment();
+		WordBucket bucket = greedy.getBucket(game.getSecretWordLength());
+		int[] wordCandidates = DictionaryIndex.screen(game, bucket);
+		if (greedyGuess == null || wordCandidates.length < 2)
+		{
+			//Nothing to search
+			depthCounts.incrementAndGet(1);
+			return greedyGuess;
+		}
+
+		Search search = new Search(bucket, game.getMaxWrongGuesses(), deadline);
+		int bestAction = Search.NO_ACTION;
+		int depth = 1;
+		try
+		{
+			while (depth < maxDepth)
+			{
+				bestAction = search.bestAction(wordCandidates, game.getGuessedLetterMask(),
+						game.numWrongGuessesMade(), game.currentScore(), depth + 1);
+				depth++;
+			}
+		} catch (SearchTimeout e)
+		{
+			//Keep the answer of the deepest search that finished
+		}
+		searchNodes.add(search.nodes);
+		depthCounts.incrementAndGet(depth);
+		if (bestAction == Search.NO_ACTION)
+		{
+			fallbacks.increment();
+			return greedyGuess;
+		}
+		if (bestAction == Search.WORD_ACTION)
+		{
+			if (greedyGuess instanceof GuessWord)
+			{
+				return greedyGuess;
+			}
+			changedGuesses.increment();
+			DecisionCache.Decision decision = DecisionCache.Decision.word(
+					bucket.getWords(wordCandidates, wordCandidates.length), wordCandidates.length);
+			return decision.toGuess(session.getRandom());
+		}
+		char letter = (char) ('a' + bestAction);
+		if (greedyGuess instanceof GuessLetter && Character.toLowerCase(((GuessLetter) greedyGuess).getLetter()) == letter)
+		{
+			return greedyGuess;
+		}
+		changedGuesses.increment();
+		return new GuessLetter(letter);
+	}
+
+	/*
+	 * @return number of guesses answered
+	 */
+	public long getGuesses()
+	{
+		return guesses.sum();
+	}
+
+	/*
+	 * @return number of guesses where not even a search of depth 2 finished in time
+	 */
+	public long getFallbacks()
+	{
+		return fallbacks.sum();
+	}
+
+	/*
+	 * @return number of guesses where the search chose another guess than the greedy strategy
+	 */
+	public long getChangedGuesses()
+	{
+		return changedGuesses.sum();
+	}
+
+	/*
+	 * @return average depth of the deepest search finished per guess, 1 for the greedy guess alone
+	 */
+	public double getAverageDepth()
+	{
+		long total = 0;
+		long count = 0;
+		for (int depth = 1; depth < depthCounts.length(); depth++)
+		{
+			total += depth * depthCounts.get(depth);
+			count += depthCounts.get(depth);
+		}
+		return (count > 0) ? (double) total / count : 0;
+	}
+
+	/*
+	 * @param depth of the search
+	 * @return number of guesses whose deepest finished search had the depth
+	 */
+	public long getDepthCount(int depth)
+	{
+		return (depth >= 1 && depth < depthCounts.length()) ? depthCounts.get(depth) : 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder depths = new StringBuilder();
+		for (int depth = 1; depth < depthCounts.length(); depth++)
+		{
+			depths.append(depth == 1 ? "" : " ").append(depth).append(':').append(depthCounts.get(depth));
+		}
+		return String.format("guesses=%d, budget=%.1fms, averageDepth=%.2f (%s), changed=%d, fallbacks=%d, nodes=%d",
+				guesses.sum(), budgetNanos / 1e6, getAverageDepth(), depths, changedGuesses.sum(),
+				fallbacks.sum(), searchNodes.sum());
+	}
+
+	/*
+	 * One search over the candidates of a guess.  Values are expected scores still to come, lower is better.
+	 */
+	private class Search {
+		static final int NO_ACTION = -1;
+		static final int WORD_ACTION = WordBucket.ALPHABET_SIZE;
+
+		private final byte[] letters;
+		private final int wordLength;
+		private final int maxWrongGuesses;
+		private final long deadline;
+		//Scratch of every level of the search, index 0 for the root
+		private final Level[] levels;
+		//Value beyond the score of positions already evaluated, by remaining depth
+		private final Map<Position, Double> memo = new HashMap<Position, Double>();
+		private long nodes;
+
+		Search(WordBucket bucket, int maxWrongGuesses, long deadline)
+		{
+			this.letters = bucket.getLetterCodes();
+			this.wordLength = bucket.getWordLength();
+			this.maxWrongGuesses = maxWrongGuesses;
+			this.deadline = deadline;
+			this.levels = new Level[maxDepth];
+			for (int i = 0; i < levels.length; i++)
+			{
+				levels[i] = new Level(wordLength);
+			}
+		}
+
+		/*
+		 * Search the root to the given depth
+		 * @param bucket indexes of the word candidates, in dictionary order
+		 * @param mask of the guessed letters
+		 * @param number of wrong guesses made
+		 * @param current score
+		 * @param depth in guesses
+		 * @return the best letter (0 for 'a') or WORD_ACTION
+		 */
+		int bestAction(int[] wordCandidates, int guessedLetterMask, int numWrong, int score, int depth)
+		{
+			//Positions of another depth have other values
+			memo.clear();
+			return (int) evaluate(wordCandidates, guessedLetterMask, numWrong, score, depth, 0, true);
+		}
+
+		/*
+		 * @param bucket indexes of the word candidates, at least two
+		 * @param mask of the guessed letters
+		 * @param number of wrong guesses made
+		 * @param score so far
+		 * @param remaining depth
+		 * @param level of the node
+		 * @param true to return the best action instead of the value
+		 * @return the expected score still to come, or the best action at the root
+		 */
+		private double evaluate(int[] wordCandidates, int guessedLetterMask, int numWrong, int score, int depth,
+				int level, boolean root)
+		{
+			if ((++nodes & 63) == 0 && System.nanoTime() - deadline > 0)
+			{
+				throw TIMEOUT;
+			}
+			int numCandidates = wordCandidates.length;
+			Position position = null;
+			if (!root)
+			{
+				position = new Position(wordCandidates, guessedLetterMask, numWrong, score, depth);
+				Double known = memo.get(position);
+				if (known != null)
+				{
+					return known.doubleValue();
+				}
+			}
+
+			//A word guess is right once in numCandidates, and otherwise removes the word
+			double bestValue = (numCandidates - 1.0) / numCandidates
+					* missed(Arrays.copyOfRange(wordCandidates, 1, numCandidates), guessedLetterMask, numWrong, score,
+							depth, level);
+			int bestAction = WORD_ACTION;
+
+			Level scratch = levels[level];
+			int numEmpty = scratch.findEmptyPositions(letters, wordCandidates[0], guessedLetterMask);
+			HangmanGuessingStrategy.clearPatternCounts(scratch.counters, scratch.matchedWords);
+			int letterCandidates = HangmanGuessingStrategy.countPatterns(scratch.emptyPositions, numEmpty, letters,
+					wordLength, wordCandidates, 0, numCandidates, scratch.letterMasks, scratch.matchedWords,
+					scratch.counters);
+			HangmanGuessingStrategy.addEmptyPatterns(letterCandidates, numCandidates, scratch.matchedWords,
+					scratch.counters);
+			int numLetters = scratch.rankLetters(letterCandidates, numCandidates, branching);
+			for (int i = 0; i < numLetters; i++)
+			{
+				int letter = scratch.rankedLetters[i];
+				double value = evaluateLetter(wordCandidates, guessedLetterMask, numWrong, score, depth, level,
+						numEmpty, letter);
+				//Ties go to the letter of higher entropy, and letters to the word
+				if (value < bestValue - 1e-9 || (value <= bestValue + 1e-9 && bestAction == WORD_ACTION))
+				{
+					bestValue = value;
+					bestAction = letter;
+				}
+			}
+			if (root)
+			{
+				return bestAction;
+			}
+			memo.put(position, Double.valueOf(bestValue));
+			return bestValue;
+		}
+
+		/*
+		 * @return the expected score still to come after guessing the letter
+		 */
+		private double evaluateLetter(int[] wordCandidates, int guessedLetterMask, int numWrong, int score, int depth,
+				int level, int numEmpty, int letter)
+		{
+			Level scratch = levels[level];
+			PatternCounter counter = scratch.counters[letter];
+			int numPatterns = counter.size();
+			int[][] groups = new int[numPatterns][];
+			int[] groupSizes = new int[numPatterns];
+			for (int i = 0; i < numPatterns; i++)
+			{
+				groups[i] = new int[counter.countAt(i)];
+			}
+			int[] positions = scratch.emptyPositions;
+			for (int w = 0; w < wordCandidates.length; w++)
+			{
+				int offset = wordCandidates[w] * wordLength;
+				int pattern = 0;
+				for (int i = 0; i < numEmpty; i++)
+				{
+					if (letters[offset + positions[i]] == letter)
+					{
+						pattern |= 1 << positions[i];
+					}
+				}
+				int group = 0;
+				while (counter.patternAt(group) != pattern)
+				{
+					group++;
+				}
+				groups[group][groupSizes[group]++] = wordCandidates[w];
+			}
+
+			int guessed = guessedLetterMask | (1 << letter);
+			double value = 0;
+			for (int i = 0; i < numPatterns; i++)
+			{
+				int pattern = counter.patternAt(i);
+				double share = (double) groups[i].length / wordCandidates.length;
+				if (pattern == 0)
+				{
+					value += share * missed(groups[i], guessed, numWrong, score, depth, level);
+				} else if (Integer.bitCount(pattern) < numEmpty)
+				{
+					value += share * (1 + next(groups[i], guessed, numWrong, score + 1, depth, level));
+				} else
+				{
+					//Every empty position revealed, the game is won
+					value += share;
+				}
+			}
+			return value;
+		}
+
+		/*
+		 * @return the expected score still to come after a wrong guess, its own point included
+		 */
+		private double missed(int[] wordCandidates, int guessedLetterMask, int numWrong, int score, int depth,
+				int level)
+		{
+			if (numWrong + 1 > maxWrongGuesses)
+			{
+				//The score of a lost game replaces everything counted so far
+				return LOST_SCORE - score;
+			}
+			return 1 + next(wordCandidates, guessedLetterMask, numWrong + 1, score + 1, depth, level);
+		}
+
+		/*
+		 * @return the expected score still to come from a position after a guess
+		 */
+		private double next(int[] wordCandidates, int guessedLetterMask, int numWrong, int score, int depth,
+				int level)
+		{
+			int numCandidates = wordCandidates.length;
+			if (numCandidates == 1)
+			{
+				//Guess the word for free
+				return 0;
+			}
+			if (depth <= 1)
+			{
+				return estimate(numCandidates);
+			}
+			return evaluate(wordCandidates, guessedLetterMask, numWrong, score, depth - 1, level + 1, false);
+		}
+	}
+
+	/*
+	 * @param number of word candidates left
+	 * @return estimated score still to come, the cheaper of guessing letters by entropy and
+	 *         guessing the words one by one
+	 */
+	static double estimate(int numCandidates)
+	{
+		return Math.min(SCORE_PER_BIT * Entropy.log2(numCandidates), (numCandidates - 1) / 2.0);
+	}
+
+	/*
+	 * Buffers of one level of a search
+	 */
+	private static class Level {
+		final int[] emptyPositions;
+		final PatternCounter[] counters = new PatternCounter[WordBucket.ALPHABET_SIZE];
+		final int[] matchedWords = new int[WordBucket.ALPHABET_SIZE];
+		final int[] letterMasks = new int[WordBucket.ALPHABET_SIZE];
+		final int[] rankedLetters = new int[WordBucket.ALPHABET_SIZE];
+		final double[] entropies = new double[WordBucket.ALPHABET_SIZE];
+
+		Level(int wordLength)
+		{
+			emptyPositions = new int[wordLength];
+			for (int letter = 0; letter < counters.length; letter++)
+			{
+				counters[letter] = new PatternCounter();
+			}
+		}
+
+		/*
+		 * The positions not revealed are those whose letter of any candidate was not guessed
+		 * @return number of empty positions
+		 */
+		int findEmptyPositions(byte[] letters, int word, int guessedLetterMask)
+		{
+			int wordLength = emptyPositions.length;
+			int numEmpty = 0;
+			for (int i = 0; i < wordLength; i++)
+			{
+				if ((guessedLetterMask & (1 << letters[word * wordLength + i])) == 0)
+				{
+					emptyPositions[numEmpty++] = i;
+				}
+			}
+			return numEmpty;
+		}
+
+		/*
+		 * Rank the counted letters by entropy, ties to the earlier letter
+		 * @return number of letters ranked, at most the limit
+		 */
+		int rankLetters(int letterCandidates, int numCandidates, int limit)
+		{
+			int numRanked = 0;
+			for (int letter = 0; letter < WordBucket.ALPHABET_SIZE; letter++)
+			{
+				if ((letterCandidates & (1 << letter)) == 0)
+				{
+					continue;
+				}
+				double entropy = Entropy.calculateEntropy(counters[letter], numCandidates);
+				if (entropy <= 0)
+				{
+					//Every candidate has the letter in the same positions, nothing to learn
+					continue;
+				}
+				//Insert in descending order
+				int i = Math.min(numRanked, limit - 1);
+				if (numRanked == limit && entropy <= entropies[i])
+				{
+					continue;
+				}
+				while (i > 0 && entropies[i - 1] < entropy)
+				{
+					entropies[i] = entropies[i - 1];
+					rankedLetters[i] = rankedLetters[i - 1];
+					i--;
+				}
+				entropies[i] = entropy;
+				rankedLetters[i] = letter;
+				numRanked = Math.min(numRanked + 1, limit);
+			}
+			return numRanked;
+		}
+	}
+
+	/*
+	 * The part of a search position its value depends on
+	 */
+	private static final class Position {
+		private final int[] wordCandidates;
+		private final int guessedLetterMask;
+		private final int numWrong;
+		private final int score;
+		private final int depth;
+		private final int hash;
+
+		Position(int[] wordCandidates, int guessedLetterMask, int numWrong, int score, int depth)
+		{
+			this.wordCandidates = wordCandidates;
+			this.guessedLetterMask = guessedLetterMask;
+			this.numWrong = numWrong;
+			this.score = score;
+			this.depth = depth;
+			this.hash = (((Arrays.hashCode(wordCandidates) * 31 + guessedLetterMask) * 31 + numWrong) * 31 + score) * 31
+					+ depth;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other)
+		{
+			if (!(other instanceof Position))
+			{
+				return false;
+			}
+			Position position = (Position) other;
+			return hash == position.hash && guessedLetterMask == position.guessedLetterMask
+					&& numWrong == position.numWrong && score == position.score && depth == position.depth
+					&& Arrays.equals(wordCandidates, position.wordCandidates);
+		}
+	}
+
+	/*
+	 * Abandons a search at its deadline
+	 */
+	private static class SearchTimeout extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		SearchTimeout()
+		{
+			super(null, null, false, false);
+		}
+	}
+}
@@ -3,6 +3,8 @@ import java.util.Map;
 
 /*
  * A comparator function for comparing the values of a hashmap
+ * The highest value comes first, and keys with equal values are ordered by key, so a TreeMap
+ * sorted by this comparator keeps every key of the map.
  */
 
 public class MapValueComparator implements Comparator<Object> {
@@ -15,12 +17,15 @@ public class MapValueComparator implements Comparator<Object> {
 	@Override
 	public int compare(Object arg0, Object arg1) {
 		
-		if ((Integer)base.get(arg0) < (Integer)base.get(arg1))
+		int value0 = base.get(arg0);
+		int value1 = base.get(arg1);
+		if (value0 < value1)
 		{
 			return 1;
-		} else if ((Integer)base.get(arg0) == (Integer)base.get(arg1))
+		} else if (value0 == value1)
 		{
-			return 0;
+			//Keep tied keys apart, in key order
+			return ((Character) arg0).compareTo((Character) arg1);
 		} else {
 			return -1;
 		}
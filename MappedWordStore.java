@@ -0,0 +1,58 @@
+import java.nio.ByteBuffer;
+
+/*
+ * A word store reading fixed-width records straight from a buffer, usually a memory-mapped
+ * region of a binary dictionary, so the words are read without parsing or String objects.
+ * A WordBucket indexing it copies the records into a PackedWordStore on the heap.
+ * Record i holds the letters of word i as one byte each.
+ */
+public class MappedWordStore implements WordStore {
+
+	private final int wordLength;
+
+	private final int size;
+
+	private final ByteBuffer records;
+
+	/*
+	 * @param length of every word
+	 * @param number of words
+	 * @param buffer with the records starting at position 0
+	 */
+	public MappedWordStore(int wordLength, int size, ByteBuffer records)
+	{
+		this.wordLength = wordLength;
+		this.size = size;
+		this.records = records;
+	}
+
+	@Override
+	public int getWordLength()
+	{
+		return wordLength;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public char letterAt(int index, int position)
+	{
+		return (char) records.get(index * wordLength + position);
+	}
+
+	@Override
+	public String getWord(int index)
+	{
+		char[] letters = new char[wordLength];
+		int offset = index * wordLength;
+		for (int p = 0; p < wordLength; p++)
+		{
+			letters[p] = (char) records.get(offset + p);
+		}
+		return new String(letters);
+	}
+}
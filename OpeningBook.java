@@ -0,0 +1,302 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/*
+ * The first guesses of every game, precompiled per word length and kept in a file between runs.
+ * For every length the book holds a decision tree of the entropy strategy cut off after a few
+ * guesses: the root is the entropy-optimal guess on the empty board, and every outcome of a
+ * guess leads to the strategy's next guess until the depth limit.  Games inside the book are
+ * answered by walking the tree, without screening or scoring the dictionary; the first game
+ * state past the limit, or off the book's path, is left to the strategy.
+ * The trees are compiled without a limit on wrong guesses, so a book serves games of any
+ * maximum.  The file records the number of words of every length, and every tree the CRC-32
+ * of the words it was compiled from (see WordBucket.checksum); a book that does not match the
+ * dictionary is compiled again.
+ * The book is read-only once built and can be shared by any number of games and threads.
+ */
+public class OpeningBook {
+
+	//Guesses compiled along every path unless given
+	public static final int DEFAULT_DEPTH = 3;
+
+	private static final int MAGIC = 0x484D4F42; //"HMOB"
+	private static final int VERSION = 3;
+
+	private final int depth;
+	private final Map<Integer, DecisionTree> trees;
+	//Number of dictionary words of every length the trees were compiled from
+	private final Map<Integer, Integer> numWords;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/*
+	 * @param number of guesses compiled along every path
+	 * @param trees keyed by word length
+	 * @param number of words of every length the trees were compiled from
+	 */
+	public OpeningBook(int depth, Map<Integer, DecisionTree> trees, Map<Integer, Integer> numWords)
+	{
+		this.depth = depth;
+		this.trees = trees;
+		this.numWords = numWords;
+	}
+
+	/*
+	 * Compile the book of every word length of the strategy's dictionary in parallel
+	 * @param strategy to compile
+	 * @param number of guesses compiled along every path
+	 * @param number of threads
+	 * @return the book
+	 */
+	public static OpeningBook build(HangmanGuessingStrategy strategy, int depth, int numThreads)
+			throws InterruptedException, ExecutionException
+	{
+		Map<Integer, Character> openingLetters = new TreeMap<Integer, Character>();
+		Map<Integer, Integer> numWords = new TreeMap<Integer, Integer>();
+		for (int length : strategy.getWordLengths())
+		{
+			//Let the strategy choose the first guess too
+			openingLetters.put(length, (char) 0);
+			numWords.put(length, strategy.getNumWords(length));
+		}
+		DecisionTreeCompiler compiler = new DecisionTreeCompiler(strategy, Integer.MAX_VALUE, 0, depth);
+		Map<Integer, DecisionTree> trees = compiler.compileAll(openingLetters, numThreads,
+				new HashMap<Integer, Long>());
+		return new OpeningBook(depth, trees, numWords);
+	}
+
+	/*
+	 * Read the book from a file, or compile it and write the file when the file is missing or
+	 * was compiled from another dictionary or to another depth
+	 * @param file name
+	 * @param strategy to compile
+	 * @param number of guesses compiled along every path
+	 * @param number of threads compiling
+	 * @return the book
+	 */
+	public static OpeningBook loadOrBuild(String fileName, HangmanGuessingStrategy strategy, int depth,
+			int numThreads) throws IOException, InterruptedException, ExecutionException
+	{
+		if (new File(fileName).isFile() && isCurrentVersion(fileName))
+		{
+			OpeningBook book = read(fileName);
+			if (book.getDepth() == depth && book.matches(strategy))
+			{
+				return book;
+			}
+		}
+		OpeningBook book = build(strategy, depth, numThreads);
+		book.write(fileName);
+		return book;
+	}
+
+	/*
+	 * @param word lengths whose words changed
+	 * @return a book without the trees of the lengths, this book when it has none of them
+	 */
+	public OpeningBook without(Set<Integer> wordLengths)
+	{
+		Map<Integer, DecisionTree> keptTrees = new TreeMap<Integer, DecisionTree>(trees);
+		Map<Integer, Integer> keptNumWords = new TreeMap<Integer, Integer>(numWords);
+		boolean removed = false;
+		for (Integer length : wordLengths)
+		{
+			removed |= keptTrees.remove(length) != null;
+			keptNumWords.remove(length);
+		}
+		return removed ? new OpeningBook(depth, keptTrees, keptNumWords) : this;
+	}
+
+	/*
+	 * @param strategy to guess with
+	 * @return true when the book was compiled from a dictionary with the same words of every length
+	 */
+	public boolean matches(HangmanGuessingStrategy strategy)
+	{
+		if (!numWords.keySet().equals(strategy.getWordLengths()))
+		{
+			return false;
+		}
+		for (Map.Entry<Integer, Integer> entry : numWords.entrySet())
+		{
+			int length = entry.getKey();
+			//Compare the counts first, they are cheap and catch most changes
+			if (strategy.getNumWords(length) != entry.getValue()
+					|| strategy.getChecksum(length) != trees.get(length).getWordsChecksum())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/*
+	 * @param length of the secret word
+	 * @return the letter guessed on the empty board (lower case), 0 when the book has no length or
+	 *         starts it with a word guess
+	 */
+	public char getOpeningLetter(int wordLength)
+	{
+		DecisionTree tree = trees.get(wordLength);
+		if (tree == null || tree.getNumNodes() == 0 || !tree.isLetterNode(DecisionTree.ROOT))
+		{
+			return 0;
+		}
+		return tree.getLetter(DecisionTree.ROOT);
+	}
+
+	/*
+	 * @param current game state
+	 * @return the guess of the book, or null when the game is past or off the book
+	 */
+	public Guess nextGuess(GameState game)
+	{
+		DecisionTree tree = trees.get(game.getSecretWordLength());
+		Guess guess = (tree != null) ? DecisionTreeStrategy.walk(tree, game) : null;
+		if (guess != null)
+		{
+			hits.increment();
+		} else
+		{
+			misses.increment();
+		}
+		return guess;
+	}
+
+	/*
+	 * @return CRC-32 of the depth and the trees as written to the book file, identifying the
+	 *         guesses the book answers
+	 */
+	public long getChecksum()
+	{
+		CRC32 crc = new CRC32();
+		DataOutputStream out = new DataOutputStream(new CheckedOutputStream(OutputStream.nullOutputStream(), crc));
+		try
+		{
+			out.writeByte(depth);
+			for (DecisionTree tree : trees.values())
+			{
+				tree.write(out);
+			}
+			out.flush();
+		} catch (IOException e)
+		{
+			//The stream writes nowhere
+			throw new IllegalStateException(e);
+		}
+		return crc.getValue();
+	}
+
+	/*
+	 * @return number of nodes of all lengths
+	 */
+	public long getNumNodes()
+	{
+		long nodes = 0;
+		for (DecisionTree tree : trees.values())
+		{
+			nodes += tree.getNumNodes();
+		}
+		return nodes;
+	}
+
+	/*
+	 * @param file name
+	 */
+	public void write(String fileName) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeByte(depth);
+			out.writeInt(trees.size());
+			for (DecisionTree tree : trees.values())
+			{
+				out.writeInt(numWords.get(tree.getWordLength()));
+				tree.write(out);
+			}
+		} finally
+		{
+			out.close();
+		}
+	}
+
+	/*
+	 * Read a book written by write
+	 * @param file name
+	 * @return the book
+	 */
+	public static OpeningBook read(String fileName) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+		try
+		{
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+			{
+				throw new IOException("Not an opening book file: " + fileName);
+			}
+			int depth = in.readUnsignedByte();
+			int numTrees = in.readInt();
+			Map<Integer, DecisionTree> trees = new TreeMap<Integer, DecisionTree>();
+			Map<Integer, Integer> numWords = new TreeMap<Integer, Integer>();
+			for (int i = 0; i < numTrees; i++)
+			{
+				int words = in.readInt();
+				DecisionTree tree = DecisionTree.read(in);
+				trees.put(tree.getWordLength(), tree);
+				numWords.put(tree.getWordLength(), words);
+			}
+			return new OpeningBook(depth, trees, numWords);
+		} finally
+		{
+			in.close();
+		}
+	}
+
+	/*
+	 * @param file name
+	 * @return true when the file starts with the header of this version of the book, false
+	 *         for a book written by an older version that has to be compiled again
+	 */
+	private static boolean isCurrentVersion(String fileName) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+		try
+		{
+			return in.readInt() == MAGIC && in.readInt() == VERSION;
+		} finally
+		{
+			in.close();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "lengths=" + trees.size() + ", depth=" + depth + ", nodes=" + getNumNodes() + ", hits=" + hits.sum()
+				+ ", misses=" + misses.sum();
+	}
+}
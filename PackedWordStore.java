@@ -0,0 +1,126 @@
+import java.util.List;
+
+/*
+ * A word store packing all the words of one length into a single byte array.
+ * Word i takes the bytes i * wordLength to (i + 1) * wordLength - 1, one letter code
+ * 0 to 25 per byte, so a word costs exactly its length in bytes instead of a String object,
+ * its char array and the reference to it.  Scoring reads the letter codes directly.
+ */
+public class PackedWordStore implements WordStore {
+
+	private final int wordLength;
+
+	private final int size;
+
+	//Letter codes of all the words, word after word
+	private final byte[] letters;
+
+	/*
+	 * @param length of every word
+	 * @param list of words with the given length, made of the letters 'a' to 'z'
+	 * @throws IllegalArgumentException for a word of another length or with another character, or words
+	 *         longer than ScoringScratch.MAX_WORD_LENGTH letters
+	 */
+	public PackedWordStore(int wordLength, List<String> wordList)
+	{
+		WordBucket.checkWordLength(wordLength);
+		this.wordLength = wordLength;
+		this.size = wordList.size();
+		this.letters = new byte[size * wordLength];
+		int offset = 0;
+		for (String word : wordList)
+		{
+			if (word.length() != wordLength)
+			{
+				throw new IllegalArgumentException("Word of length " + word.length() + " in bucket of length "
+						+ wordLength + ": " + word);
+			}
+			for (int p = 0; p < wordLength; p++)
+			{
+				letters[offset++] = toCode(word, word.charAt(p));
+			}
+		}
+	}
+
+	private PackedWordStore(int wordLength, int size, byte[] letters)
+	{
+		this.wordLength = wordLength;
+		this.size = size;
+		this.letters = letters;
+	}
+
+	/*
+	 * @param any word store
+	 * @return the store itself if it is packed, otherwise a packed copy of its words
+	 */
+	public static PackedWordStore copyOf(WordStore store)
+	{
+		if (store instanceof PackedWordStore)
+		{
+			return (PackedWordStore) store;
+		}
+		int wordLength = store.getWordLength();
+		byte[] letters = new byte[store.size() * wordLength];
+		int offset = 0;
+		for (int i = 0; i < store.size(); i++)
+		{
+			for (int p = 0; p < wordLength; p++)
+			{
+				char c = store.letterAt(i, p);
+				if (c < 'a' || c > 'z')
+				{
+					throw new IllegalArgumentException("Not a lower case word: " + store.getWord(i));
+				}
+				letters[offset++] = (byte) (c - 'a');
+			}
+		}
+		return new PackedWordStore(wordLength, store.size(), letters);
+	}
+
+	@Override
+	public int getWordLength()
+	{
+		return wordLength;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public char letterAt(int index, int position)
+	{
+		return (char) ('a' + letters[index * wordLength + position]);
+	}
+
+	@Override
+	public String getWord(int index)
+	{
+		char[] word = new char[wordLength];
+		int offset = index * wordLength;
+		for (int p = 0; p < wordLength; p++)
+		{
+			word[p] = (char) ('a' + letters[offset + p]);
+		}
+		return new String(word);
+	}
+
+	/*
+	 * @return the letter codes of all the words, word after word.  Shared, not to be modified.
+	 */
+	public byte[] getLetterCodes()
+	{
+		return letters;
+	}
+
+	private static byte toCode(String word, char c)
+	{
+		if (c < 'a' || c > 'z')
+		{
+			throw new IllegalArgumentException("Not a lower case word: " + word);
+		}
+		return (byte) (c - 'a');
+	}
+}
@@ -0,0 +1,100 @@
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Counts the reveal patterns of every letter over a range of word candidates on a fork-join pool.
+ * Ranges larger than the chunk size are split in halves; each half is counted into its own
+ * counters and the right half is merged into the left one, so the merged counts are exactly
+ * the counts of a single pass over the whole range.
+ */
+public class PatternCountTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	//Smallest range worth handing to another worker
+	public static final int MIN_CHUNK_SIZE = 2048;
+
+	private final int[] emptyLetterPositions;
+	private final int numEmpty;
+	private final byte[] letters;
+	private final int wordLength;
+	private final int[] wordCandidates;
+	private final int from;
+	private final int to;
+	private final int chunkSize;
+
+	//Results of this range
+	private PatternCounter[] counters;
+	private int[] matchedWords;
+	private int letterCandidates;
+
+	/*
+	 * @param positions of mystery letters
+	 * @param number of positions of mystery letters
+	 * @param letter codes of the bucket
+	 * @param length of the words
+	 * @param bucket indexes of the word candidates
+	 * @param index of the first word candidate to count
+	 * @param index after the last word candidate to count
+	 * @param largest range counted without splitting
+	 */
+	public PatternCountTask(int[] emptyLetterPositions, int numEmpty, byte[] letters, int wordLength,
+			int[] wordCandidates, int from, int to, int chunkSize)
+	{
+		this.emptyLetterPositions = emptyLetterPositions;
+		this.numEmpty = numEmpty;
+		this.letters = letters;
+		this.wordLength = wordLength;
+		this.wordCandidates = wordCandidates;
+		this.from = from;
+		this.to = to;
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	protected void compute()
+	{
+		if (to - from <= chunkSize)
+		{
+			counters = new PatternCounter[WordBucket.ALPHABET_SIZE];
+			for (int letter = 0; letter < WordBucket.ALPHABET_SIZE; letter++)
+			{
+				counters[letter] = new PatternCounter();
+			}
+			matchedWords = new int[WordBucket.ALPHABET_SIZE];
+			letterCandidates = HangmanGuessingStrategy.countPatterns(emptyLetterPositions, numEmpty, letters,
+					wordLength, wordCandidates, from, to, new int[WordBucket.ALPHABET_SIZE], matchedWords, counters);
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		PatternCountTask left = new PatternCountTask(emptyLetterPositions, numEmpty, letters, wordLength,
+				wordCandidates, from, middle, chunkSize);
+		PatternCountTask right = new PatternCountTask(emptyLetterPositions, numEmpty, letters, wordLength,
+				wordCandidates, middle, to, chunkSize);
+		invokeAll(left, right);
+
+		//Take over the left results and add the right ones
+		counters = left.counters;
+		matchedWords = left.matchedWords;
+		letterCandidates = right.mergeInto(counters, matchedWords) | left.letterCandidates;
+	}
+
+	/*
+	 * Add the counts of this range to other counts
+	 * @param counters with the number of words per bitmask, one per letter
+	 * @param number of words containing each letter
+	 * @return a bitmask of all the letters found in this range, bit 0 for 'a'
+	 */
+	public int mergeInto(PatternCounter[] targetCounters, int[] targetMatchedWords)
+	{
+		for (int letter = 0; letter < WordBucket.ALPHABET_SIZE; letter++)
+		{
+			PatternCounter counter = counters[letter];
+			for (int i = 0; i < counter.size(); i++)
+			{
+				targetCounters[letter].add(counter.patternAt(i), counter.countAt(i));
+			}
+			targetMatchedWords[letter] += matchedWords[letter];
+		}
+		return letterCandidates;
+	}
+}
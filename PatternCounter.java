@@ -0,0 +1,174 @@
+import java.util.Arrays;
+
+/*
+ * Counts how many words share each reveal pattern of a guessed letter.
+ * A pattern is an int bitmask with bit i set when the word has the letter at position i.
+ * The table uses open addressing with linear probing over primitive arrays, and it is
+ * cleared and reused between letters so counting does not allocate per word.
+ * Distinct patterns are also remembered in the order they were first seen, which is
+ * the order the counts are handed out in.  The counts can also be handed out sorted, so
+ * a result computed from them does not depend on the order the words were counted in.
+ */
+public class PatternCounter {
+
+	//Patterns are never negative since words are shorter than 32 letters
+	private static final int EMPTY = -1;
+
+	private int[] keys;
+	private int[] counts;
+
+	//Table slot of each distinct pattern, in the order the patterns were first seen
+	private int[] slotOrder;
+	private int size;
+
+	//Scratch array for the sorted counts
+	private int[] sorted = new int[0];
+
+	public PatternCounter()
+	{
+		this(64);
+	}
+
+	/*
+	 * @param expected number of distinct patterns
+	 */
+	public PatternCounter(int expectedPatterns)
+	{
+		int capacity = 16;
+		while (capacity < expectedPatterns * 2)
+		{
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/*
+	 * Forget all counted patterns, only the used slots are reset
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < size; i++)
+		{
+			keys[slotOrder[i]] = EMPTY;
+		}
+		size = 0;
+	}
+
+	/*
+	 * Count one more word with the given pattern
+	 * @param pattern bitmask
+	 */
+	public void increment(int pattern)
+	{
+		add(pattern, 1);
+	}
+
+	/*
+	 * Count more words with the given pattern
+	 * @param pattern bitmask
+	 * @param number of words to add
+	 */
+	public void add(int pattern, int count)
+	{
+		int mask = keys.length - 1;
+		int slot = hash(pattern) & mask;
+		while (true)
+		{
+			int key = keys[slot];
+			if (key == pattern)
+			{
+				counts[slot] += count;
+				return;
+			}
+			if (key == EMPTY)
+			{
+				keys[slot] = pattern;
+				counts[slot] = count;
+				slotOrder[size++] = slot;
+				if (size * 2 > keys.length)
+				{
+					rehash();
+				}
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/*
+	 * @return number of distinct patterns counted
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/*
+	 * @param index of a distinct pattern in the order it was first seen
+	 * @return the pattern bitmask
+	 */
+	public int patternAt(int index)
+	{
+		return keys[slotOrder[index]];
+	}
+
+	/*
+	 * @param index of a distinct pattern in the order it was first seen
+	 * @return number of words with this pattern
+	 */
+	public int countAt(int index)
+	{
+		return counts[slotOrder[index]];
+	}
+
+	/*
+	 * @return an array whose first size() entries are the counts in ascending order,
+	 * the array is reused by the next call
+	 */
+	public int[] sortedCounts()
+	{
+		if (sorted.length < size)
+		{
+			sorted = new int[slotOrder.length];
+		}
+		for (int i = 0; i < size; i++)
+		{
+			sorted[i] = counts[slotOrder[i]];
+		}
+		Arrays.sort(sorted, 0, size);
+		return sorted;
+	}
+
+	private void rehash()
+	{
+		int[] oldKeys = keys;
+		int[] oldCounts = counts;
+		int[] oldOrder = slotOrder;
+		int oldSize = size;
+		allocate(oldKeys.length * 2);
+		//Re-insert in the original order to keep the first seen order
+		for (int i = 0; i < oldSize; i++)
+		{
+			int slot = oldOrder[i];
+			add(oldKeys[slot], oldCounts[slot]);
+		}
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new int[capacity];
+		counts = new int[capacity];
+		slotOrder = new int[capacity / 2 + 1];
+		size = 0;
+		for (int i = 0; i < capacity; i++)
+		{
+			keys[i] = EMPTY;
+		}
+	}
+
+	private static int hash(int pattern)
+	{
+		int h = pattern * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
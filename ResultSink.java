@@ -0,0 +1,20 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/*
+ * Destination of the records of finished games.
+ * Implementations write from the calling thread and are not thread-safe; wrap them in an
+ * AsyncResultSink to write from any number of threads on a dedicated writer thread.
+ */
+public interface ResultSink extends Closeable {
+
+	/*
+	 * @param the record of a finished game
+	 */
+	void write(GameRecord record) throws IOException;
+
+	/*
+	 * Write out everything buffered so far
+	 */
+	void flush() throws IOException;
+}
@@ -0,0 +1,109 @@
+import java.util.Random;
+
+/*
+ * Reusable buffers for scoring the letters of one candidate set.
+ * A scratch is used by one thread at a time; it belongs to the StrategyCursor of the thread
+ * scoring the candidates, which lends it out with acquireScratch and takes it back with
+ * releaseScratch, and makes a fresh one for a guess nested inside another on the same thread.
+ */
+public class ScoringScratch {
+
+	//Words are shorter than 32 letters so their reveal patterns fit in an int
+	public static final int MAX_WORD_LENGTH = 31;
+
+	private final int[] emptyLetterPositions = new int[MAX_WORD_LENGTH];
+	private final PatternCounter[] patternCounters = new PatternCounter[WordBucket.ALPHABET_SIZE];
+	private final int[] letterMasks = new int[WordBucket.ALPHABET_SIZE];
+	private final int[] matchedWords = new int[WordBucket.ALPHABET_SIZE];
+	//Sampled word candidates, grown on demand
+	private int[] sample = new int[0];
+	//Sampled words without each letter, see EntropySampler
+	private final int[] unmatchedWords = new int[WordBucket.ALPHABET_SIZE];
+	//Draws of the sampled words, reseeded for every candidate set
+	private final Random sampleRandom = new Random();
+
+	//Number of letters scored by the last decision
+	private int lettersScored;
+
+	//Entropy of the guess chosen by the last decision
+	private double entropy;
+
+	public ScoringScratch()
+	{
+		for (int letter = 0; letter < WordBucket.ALPHABET_SIZE; letter++)
+		{
+			patternCounters[letter] = new PatternCounter();
+		}
+	}
+
+	int[] getEmptyLetterPositions()
+	{
+		return emptyLetterPositions;
+	}
+
+	/*
+	 * @return one pattern counter per letter of the alphabet
+	 */
+	PatternCounter[] getPatternCounters()
+	{
+		return patternCounters;
+	}
+
+	int[] getLetterMasks()
+	{
+		return letterMasks;
+	}
+
+	int[] getMatchedWords()
+	{
+		return matchedWords;
+	}
+
+	/*
+	 * @param number of sampled words
+	 * @return an array of at least the size
+	 */
+	int[] getSample(int size)
+	{
+		if (sample.length < size)
+		{
+			sample = new int[size];
+		}
+		return sample;
+	}
+
+	int[] getUnmatchedWords()
+	{
+		return unmatchedWords;
+	}
+
+	/*
+	 * @param seed of the draws
+	 * @return the random source of the sample draws, reseeded
+	 */
+	Random getSampleRandom(long seed)
+	{
+		sampleRandom.setSeed(seed);
+		return sampleRandom;
+	}
+
+	int getLettersScored()
+	{
+		return lettersScored;
+	}
+
+	void setLettersScored(int lettersScored)
+	{
+		this.lettersScored = lettersScored;
+	}
+
+	double getEntropy()
+	{
+		return entropy;
+	}
+
+	void setEntropy(double entropy)
+	{
+		this.entropy = entropy;
+	}
+}
@@ -0,0 +1,65 @@
+import java.util.Random;
+
+/*
+ * The working state of one thread guessing with a HangmanGuessingStrategy: the scoring buffers
+ * and a seeded random source.
+ * The strategy keeps one cursor per thread, so games on different threads never share or wait
+ * for each other's buffers, and a game moving between threads always scores with the buffers of
+ * the thread it runs on.  Cursors are numbered in the order the threads first guess, and the
+ * random source of cursor n is seeded from the strategy seed and n.
+ */
+public class StrategyCursor {
+
+	//Spreads the seeds of consecutive cursors over the whole range of longs
+	private static final long SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
+	private final ScoringScratch scratch = new ScoringScratch();
+
+	//True while a guess of the owning thread scores with the scratch
+	private boolean scratchInUse;
+
+	private final Random random;
+
+	/*
+	 * @param seed of the strategy
+	 * @param number of the cursor, starting at 0
+	 */
+	StrategyCursor(long seed, long cursorNumber)
+	{
+		this.random = new Random(seed + cursorNumber * SEED_INCREMENT);
+	}
+
+	/*
+	 * A thread waiting for a fork-join pool may run another game's guess in the middle of its
+	 * own, the nested guess then scores with buffers of its own
+	 * @return buffers for scoring, used by the owning thread only until released
+	 */
+	ScoringScratch acquireScratch()
+	{
+		if (scratchInUse)
+		{
+			return new ScoringScratch();
+		}
+		scratchInUse = true;
+		return scratch;
+	}
+
+	/*
+	 * @param buffers returned by acquireScratch
+	 */
+	void releaseScratch(ScoringScratch acquired)
+	{
+		if (acquired == scratch)
+		{
+			scratchInUse = false;
+		}
+	}
+
+	/*
+	 * @return random source of the owning thread
+	 */
+	Random getRandom()
+	{
+		return random;
+	}
+}
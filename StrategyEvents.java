@@ -0,0 +1,106 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * Java Flight Recorder events of the strategy and the console, so their work can be lined up
+ * with GC and JIT activity in a recording.  Every event is disabled by default; a disabled
+ * event is never committed and costs next to nothing.  Switch them on in a recording setting:
+ *   java -XX:StartFlightRecording:settings=hangman.jfc ...
+ * or for one event with jcmd JFR.configure / a custom .jfc entry, e.g.
+ *   <event name="hangman.Decision"><setting name="enabled">true</setting></event>
+ * Each event records its duration from begin() to commit().
+ */
+public class StrategyEvents {
+
+	public static final String GUESS_LETTER = "letter";
+	public static final String GUESS_WORD = "word";
+
+	private StrategyEvents()
+	{
+	}
+
+	@Name("hangman.Screening")
+	@Label("Candidate Screening")
+	@Description("Refining the word candidates of a game with its latest guesses")
+	@Category({ "Hangman", "Strategy" })
+	@Enabled(false)
+	@StackTrace(false)
+	public static class ScreeningEvent extends Event {
+		@Label("Word Length")
+		public int wordLength;
+
+		@Label("Candidates Before")
+		public int candidatesBefore;
+
+		@Label("Candidates After")
+		public int candidatesAfter;
+	}
+
+	@Name("hangman.Scoring")
+	@Label("Candidate Scoring")
+	@Description("Counting the reveal patterns of every letter and scoring their entropy")
+	@Category({ "Hangman", "Strategy" })
+	@Enabled(false)
+	@StackTrace(false)
+	public static class ScoringEvent extends Event {
+		@Label("Word Length")
+		public int wordLength;
+
+		@Label("Candidate Count")
+		public int candidateCount;
+
+		@Label("Letters Scored")
+		public int lettersScored;
+
+		@Label("Entropy")
+		@Description("Entropy of the chosen guess in bits")
+		public double entropy;
+	}
+
+	@Name("hangman.Decision")
+	@Label("Strategy Decision")
+	@Description("One nextGuess of the strategy, from the game state to the chosen guess")
+	@Category({ "Hangman", "Strategy" })
+	@Enabled(false)
+	@StackTrace(false)
+	public static class DecisionEvent extends Event {
+		@Label("Word Length")
+		public int wordLength;
+
+		@Label("Candidate Count")
+		public int candidateCount;
+
+		@Label("Guess Type")
+		@Description("letter or word")
+		public String guessType;
+
+		@Label("Entropy")
+		@Description("Entropy of the chosen guess in bits, NaN when answered by the cache")
+		public double entropy;
+
+		@Label("Cached")
+		public boolean cached;
+	}
+
+	@Name("hangman.Game")
+	@Label("Game")
+	@Description("One game played by the console, from the first guess to the end of the game")
+	@Category({ "Hangman", "Console" })
+	@Enabled(false)
+	@StackTrace(false)
+	public static class GameEvent extends Event {
+		@Label("Word Length")
+		public int wordLength;
+
+		@Label("Won")
+		public boolean won;
+
+		@Label("Score")
+		public int score;
+	}
+}
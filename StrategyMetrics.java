@@ -0,0 +1,317 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Counters of the work done by the strategy and the console, kept per word length.
+ * For every guess it records the latency, the candidate set sizes before and after screening,
+ * the number of letters scored and the time spent screening and scoring; for every game the
+ * duration.  Latencies and candidate set sizes also go into log-linear histograms, as in
+ * HdrHistogram: every power of two from 8 on is split into 8 linear sub-buckets, and the values
+ * below 8 have a bucket each, so a bucket is at most an eighth of its lower bound wide.
+ * All counters are LongAdders or atomic arrays, so games on any number of threads record
+ * without locking, and the counters can be read at any time while they are updated.
+ */
+public class StrategyMetrics {
+
+	//Linear sub-buckets per power of two, 2^SUB_BUCKET_BITS
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	//Enough buckets for latencies up to 2^48 - 1 ns and any candidate set size
+	public static final int NUM_BUCKETS = (48 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final LengthMetrics[] byLength = new LengthMetrics[ScoringScratch.MAX_WORD_LENGTH + 1];
+
+	private final long startNanos = System.nanoTime();
+
+	public StrategyMetrics()
+	{
+		for (int length = 0; length < byLength.length; length++)
+		{
+			byLength[length] = new LengthMetrics();
+		}
+	}
+
+	/*
+	 * Record one guess of the strategy
+	 * @param length of the secret word
+	 * @param total time of the guess in nanoseconds
+	 * @param time spent screening the candidates in nanoseconds
+	 * @param time spent scoring the candidates in nanoseconds
+	 * @param number of candidates before screening
+	 * @param number of candidates after screening
+	 * @param number of letters scored
+	 * @param true if the guess was answered by the decision cache
+	 */
+	public void recordGuess(int wordLength, long nanos, long screenNanos, long scoreNanos, int candidatesBefore,
+			int candidatesAfter, int lettersScored, boolean cached)
+	{
+		LengthMetrics metrics = forLength(wordLength);
+		metrics.guesses.increment();
+		metrics.guessNanos.add(nanos);
+		metrics.screenNanos.add(screenNanos);
+		metrics.scoreNanos.add(scoreNanos);
+		metrics.candidatesBefore.add(candidatesBefore);
+		metrics.candidatesAfter.add(candidatesAfter);
+		metrics.lettersScored.add(lettersScored);
+		if (cached)
+		{
+			metrics.cachedGuesses.increment();
+		}
+		metrics.latencyHistogram.incrementAndGet(bucketOf(nanos));
+		metrics.candidateHistogram.incrementAndGet(bucketOf(candidatesAfter));
+	}
+
+	/*
+	 * Record one finished game
+	 * @param length of the secret word
+	 * @param time spent playing the game in nanoseconds
+	 */
+	public void recordGame(int wordLength, long nanos)
+	{
+		LengthMetrics metrics = forLength(wordLength);
+		metrics.games.increment();
+		metrics.gameNanos.add(nanos);
+	}
+
+	/*
+	 * @return number of games recorded so far
+	 */
+	public long getGames()
+	{
+		long games = 0;
+		for (LengthMetrics metrics : byLength)
+		{
+			games += metrics.games.sum();
+		}
+		return games;
+	}
+
+	/*
+	 * @return games recorded per second since the metrics were created
+	 */
+	public double getGamesPerSecond()
+	{
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		return (seconds > 0) ? getGames() / seconds : 0;
+	}
+
+	/*
+	 * @param histogram bucket
+	 * @return the smallest value counted by the bucket
+	 */
+	public static long bucketLowerBound(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+		return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (bucket / SUB_BUCKETS - 1);
+	}
+
+	/*
+	 * Print one line per word length with the averages and the latency percentiles
+	 * @param stream to print to
+	 */
+	public void printSummary(PrintStream out)
+	{
+		out.println("Length   Games   Guesses  Cached  Avg(us)  p50(us)  p99(us)  Screen%   Score%"
+				+ "  Cands(before)  Cands(after)  Letters");
+		for (int length = 0; length < byLength.length; length++)
+		{
+			LengthMetrics metrics = byLength[length];
+			long guesses = metrics.guesses.sum();
+			if (guesses == 0 && metrics.games.sum() == 0)
+			{
+				continue;
+			}
+			long guessNanos = metrics.guessNanos.sum();
+			out.printf("%6d %7d %9d %7d %8.1f %8.1f %8.1f %8.1f %8.1f %14.1f %13.1f %8.1f%n", length,
+					metrics.games.sum(), guesses, metrics.cachedGuesses.sum(), average(guessNanos, guesses) / 1000,
+					percentile(metrics.latencyHistogram, 0.50) / 1000.0,
+					percentile(metrics.latencyHistogram, 0.99) / 1000.0,
+					percent(metrics.screenNanos.sum(), guessNanos), percent(metrics.scoreNanos.sum(), guessNanos),
+					average(metrics.candidatesBefore.sum(), guesses), average(metrics.candidatesAfter.sum(), guesses),
+					average(metrics.lettersScored.sum(), guesses));
+		}
+		out.printf("Games per second: %.1f%n", getGamesPerSecond());
+	}
+
+	/*
+	 * Write the counters and histograms as tab separated values, one row per word length,
+	 * with a header row naming the columns.  The file is written to a temporary file first and
+	 * then renamed, so a reader never sees a partly written file.
+	 * @param file name
+	 */
+	public void writeFile(String fileName) throws IOException
+	{
+		File target = new File(fileName);
+		File temp = new File(fileName + ".tmp");
+		PrintWriter out = new PrintWriter(new FileWriter(temp));
+		try
+		{
+			out.print("length\tgames\tgameNanos\tguesses\tcachedGuesses\tguessNanos\tscreenNanos\tscoreNanos"
+					+ "\tcandidatesBefore\tcandidatesAfter\tlettersScored");
+			for (int b = 0; b < NUM_BUCKETS; b++)
+			{
+				out.print("\tlatency" + bucketLowerBound(b));
+			}
+			for (int b = 0; b < NUM_BUCKETS; b++)
+			{
+				out.print("\tcandidates" + bucketLowerBound(b));
+			}
+			out.println();
+			for (int length = 0; length < byLength.length; length++)
+			{
+				LengthMetrics metrics = byLength[length];
+				if (metrics.guesses.sum() == 0 && metrics.games.sum() == 0)
+				{
+					continue;
+				}
+				out.print(length + "\t" + metrics.games.sum() + "\t" + metrics.gameNanos.sum() + "\t"
+						+ metrics.guesses.sum() + "\t" + metrics.cachedGuesses.sum() + "\t" + metrics.guessNanos.sum()
+						+ "\t" + metrics.screenNanos.sum() + "\t" + metrics.scoreNanos.sum() + "\t"
+						+ metrics.candidatesBefore.sum() + "\t" + metrics.candidatesAfter.sum() + "\t"
+						+ metrics.lettersScored.sum());
+				for (int b = 0; b < NUM_BUCKETS; b++)
+				{
+					out.print("\t" + metrics.latencyHistogram.get(b));
+				}
+				for (int b = 0; b < NUM_BUCKETS; b++)
+				{
+					out.print("\t" + metrics.candidateHistogram.get(b));
+				}
+				out.println();
+			}
+		} finally
+		{
+			out.close();
+		}
+		if (out.checkError())
+		{
+			throw new IOException("Failed to write " + temp);
+		}
+		if (!temp.renameTo(target))
+		{
+			target.delete();
+			if (!temp.renameTo(target))
+			{
+				throw new IOException("Failed to rename " + temp + " to " + target);
+			}
+		}
+	}
+
+	/*
+	 * Write the file periodically on a daemon thread until the returned executor is shut down
+	 * @param file name
+	 * @param period in seconds
+	 * @return the executor writing the file
+	 */
+	public ScheduledExecutorService scheduleWrites(final String fileName, long periodSeconds)
+	{
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "metrics-writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run()
+			{
+				try
+				{
+					writeFile(fileName);
+				} catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+		return executor;
+	}
+
+	private LengthMetrics forLength(int wordLength)
+	{
+		return byLength[Math.min(Math.max(wordLength, 0), byLength.length - 1)];
+	}
+
+	private static int bucketOf(long value)
+	{
+		if (value < SUB_BUCKETS)
+		{
+			return (int) Math.max(value, 0);
+		}
+		//The highest bit picks the power of two, the next SUB_BUCKET_BITS bits the sub-bucket
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int bucket = (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+		return Math.min(bucket, NUM_BUCKETS - 1);
+	}
+
+	/*
+	 * @return the value of the given fraction of the values, interpolated linearly within its bucket
+	 */
+	private static long percentile(AtomicLongArray histogram, double fraction)
+	{
+		long total = 0;
+		for (int b = 0; b < NUM_BUCKETS; b++)
+		{
+			total += histogram.get(b);
+		}
+		long rank = (long) Math.ceil(total * fraction);
+		long seen = 0;
+		for (int b = 0; b < NUM_BUCKETS; b++)
+		{
+			long count = histogram.get(b);
+			if (seen + count >= rank && count > 0)
+			{
+				long lower = bucketLowerBound(b);
+				long width = (b + 1 < NUM_BUCKETS) ? bucketLowerBound(b + 1) - lower : 0;
+				//The middle of the rank's share of the bucket
+				return lower + width * (2 * (rank - seen) - 1) / (2 * count);
+			}
+			seen += count;
+		}
+		return 0;
+	}
+
+	private static double average(long sum, long count)
+	{
+		return (count == 0) ? 0 : (double) sum / count;
+	}
+
+	private static double percent(long part, long whole)
+	{
+		return (whole == 0) ? 0 : 100.0 * part / whole;
+	}
+
+	/*
+	 * The counters of one word length
+	 */
+	private static class LengthMetrics {
+		final LongAdder games = new LongAdder();
+		final LongAdder gameNanos = new LongAdder();
+		final LongAdder guesses = new LongAdder();
+		final LongAdder cachedGuesses = new LongAdder();
+		final LongAdder guessNanos = new LongAdder();
+		final LongAdder screenNanos = new LongAdder();
+		final LongAdder scoreNanos = new LongAdder();
+		final LongAdder candidatesBefore = new LongAdder();
+		final LongAdder candidatesAfter = new LongAdder();
+		final LongAdder lettersScored = new LongAdder();
+		final AtomicLongArray latencyHistogram = new AtomicLongArray(NUM_BUCKETS);
+		final AtomicLongArray candidateHistogram = new AtomicLongArray(NUM_BUCKETS);
+	}
+}
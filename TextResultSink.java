@@ -0,0 +1,50 @@
+import java.io.IOException;
+import java.io.PrintStream;
+
+/*
+ * Writes the human-readable line the console has always printed for every game:
+ *   1) Secret word=HONEYCOMB; Game So Far=HONEYCOMB; score=5; status=GAME_WON
+ */
+public class TextResultSink implements ResultSink {
+
+	private final PrintStream out;
+	private final boolean closeStream;
+
+	/*
+	 * @param stream to print to
+	 * @param true to close the stream with the sink, false for a shared stream such as System.out
+	 */
+	public TextResultSink(PrintStream out, boolean closeStream)
+	{
+		this.out = out;
+		this.closeStream = closeStream;
+	}
+
+	@Override
+	public void write(GameRecord record)
+	{
+		out.print(record.getGameNumber() + ") Secret word=" + record.getSecretWord() + "; Game So Far="
+				+ record.getFinalPattern() + "; score=" + record.getScore() + "; status=" + record.getStatus());
+		out.println();
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		out.flush();
+		if (out.checkError())
+		{
+			throw new IOException("Failed to write game records");
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		flush();
+		if (closeStream)
+		{
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,346 @@
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/*
+ * An inverted index over all the dictionary words of a single length.
+ * Every (position, letter) pair owns a posting list stored as a bitset, where bit i
+ * is set when the i-th word of the bucket has that letter at that position.  A second
+ * set of bitsets records which words contain a letter anywhere.
+ * Screening word candidates then becomes a chain of AND / ANDNOT operations over
+ * long words instead of a character by character comparison of every word.
+ * The words themselves are kept packed as letter codes, and candidate sets refer to them by
+ * their index in the bucket.
+ */
+public class WordBucket {
+
+	//Number of letters in the alphabet, words are assumed to be lower case 'a' to 'z'
+	public static final int ALPHABET_SIZE = 26;
+
+	private final int wordLength;
+
+	private final PackedWordStore words;
+
+	//Number of long words needed to hold one bit per word
+	private final int numLongs;
+
+	//positionPostings[position * ALPHABET_SIZE + letter] marks the words with the letter at the position
+	private final long[][] positionPostings;
+
+	//containsPostings[letter] marks the words with the letter at any position
+	private final long[][] containsPostings;
+
+	/*
+	 * @param length of every word in the bucket
+	 * @param list of words with the given length
+	 */
+	public WordBucket(int wordLength, List<String> wordList)
+	{
+		this(new PackedWordStore(wordLength, wordList));
+	}
+
+	/*
+	 * @param the words of one length, packed into a heap copy unless they already are; a
+	 * mapped store is copied too, at one byte per letter, so scoring reads a plain array
+	 */
+	public WordBucket(WordStore store)
+	{
+		checkWordLength(store.getWordLength());
+		this.wordLength = store.getWordLength();
+		this.words = PackedWordStore.copyOf(store);
+		this.numLongs = (words.size() + 63) >>> 6;
+		this.positionPostings = new long[wordLength * ALPHABET_SIZE][numLongs];
+		this.containsPostings = new long[ALPHABET_SIZE][numLongs];
+
+		byte[] letters = words.getLetterCodes();
+		for (int i = 0; i < words.size(); i++)
+		{
+			long bit = 1L << i;
+			for (int p = 0; p < wordLength; p++)
+			{
+				int letter = letters[i * wordLength + p];
+				positionPostings[p * ALPHABET_SIZE + letter][i >>> 6] |= bit;
+				containsPostings[letter][i >>> 6] |= bit;
+			}
+		}
+	}
+
+	/*
+	 * Scoring keeps the positions of a word in the bits of an int, so words are at most
+	 * ScoringScratch.MAX_WORD_LENGTH letters long
+	 * @param a dictionary word
+	 * @throws IllegalArgumentException for a longer word or a word with a character other than 'a' to 'z'
+	 */
+	public static void checkWord(String word)
+	{
+		if (word.length() > ScoringScratch.MAX_WORD_LENGTH)
+		{
+			throw new IllegalArgumentException("Word longer than " + ScoringScratch.MAX_WORD_LENGTH + " letters: "
+					+ word);
+		}
+		for (int i = 0; i < word.length(); i++)
+		{
+			char c = word.charAt(i);
+			if (c < 'a' || c > 'z')
+			{
+				throw new IllegalArgumentException("Not a lower case word: " + word);
+			}
+		}
+	}
+
+	/*
+	 * @param length of the words of a bucket
+	 * @throws IllegalArgumentException for words longer than ScoringScratch.MAX_WORD_LENGTH letters
+	 */
+	public static void checkWordLength(int wordLength)
+	{
+		if (wordLength > ScoringScratch.MAX_WORD_LENGTH)
+		{
+			throw new IllegalArgumentException("Words longer than " + ScoringScratch.MAX_WORD_LENGTH
+					+ " letters are not supported: " + wordLength);
+		}
+	}
+
+	public int getWordLength()
+	{
+		return wordLength;
+	}
+
+	public int size()
+	{
+		return words.size();
+	}
+
+	public String getWord(int index)
+	{
+		return words.getWord(index);
+	}
+
+	/*
+	 * @return CRC-32 of the letter codes of the words in bucket order, identifying the words a
+	 *         decision tree was compiled from
+	 */
+	public long checksum()
+	{
+		CRC32 crc = new CRC32();
+		crc.update(words.getLetterCodes(), 0, words.size() * wordLength);
+		return crc.getValue();
+	}
+
+	/*
+	 * @return the letter codes 0 to 25 of all the words, word i starting at i * getWordLength()
+	 */
+	public byte[] getLetterCodes()
+	{
+		return words.getLetterCodes();
+	}
+
+	/*
+	 * @param indexes of words in the bucket
+	 * @param number of indexes to use
+	 * @return the words
+	 */
+	public String[] getWords(int[] indexes, int count)
+	{
+		String[] wordList = new String[count];
+		for (int i = 0; i < count; i++)
+		{
+			wordList[i] = words.getWord(indexes[i]);
+		}
+		return wordList;
+	}
+
+	/*
+	 * @param bitset over the bucket
+	 * @return the indexes of the set bits in ascending order
+	 */
+	public static int[] toIndexes(long[] bits)
+	{
+		int[] indexes = new int[cardinality(bits)];
+		int count = 0;
+		for (int i = nextSetBit(bits, 0); i >= 0; i = nextSetBit(bits, i + 1))
+		{
+			indexes[count++] = i;
+		}
+		return indexes;
+	}
+
+	/*
+	 * Find the words that are consistent with the current game board.
+	 * A word survives when it matches every revealed letter in place, has none of the
+	 * guessed letters in the positions that are still mysteries, and has not already been
+	 * guessed as a wrong word.
+	 * @param current game board with correctly guessed letters in position
+	 * @param all previously guessed letters (upper case)
+	 * @param all wrongly guessed words (upper case)
+	 * @return a bitset over the bucket with one bit set per surviving word
+	 */
+	public long[] screen(char[] wordGuessedSoFar, Set<Character> allGuessedLetters, Set<String> incorrectlyGuessedWords)
+	{
+		int guessedLetterMask = 0;
+		for (Character guessed : allGuessedLetters)
+		{
+			guessedLetterMask |= HangmanGame.letterBit(guessed.charValue());
+		}
+		return screen(wordGuessedSoFar, guessedLetterMask, incorrectlyGuessedWords);
+	}
+
+	/*
+	 * Find the words that are consistent with the current game board, see above
+	 * @param current game board with correctly guessed letters in position
+	 * @param mask of all previously guessed letters, see HangmanGame.letterBit
+	 * @param all wrongly guessed words (upper case)
+	 * @return a bitset over the bucket with one bit set per surviving word
+	 */
+	public long[] screen(char[] wordGuessedSoFar, int guessedLetterMask, Set<String> incorrectlyGuessedWords)
+	{
+		long[] survivors = new long[numLongs];
+		if (words.size() == 0)
+		{
+			return survivors;
+		}
+		//Start with every word in the bucket
+		for (int j = 0; j < numLongs; j++)
+		{
+			survivors[j] = -1L;
+		}
+		survivors[numLongs - 1] = -1L >>> (-words.size() & 63);
+
+		char mysteryLetter = HangmanGame.MYSTERY_LETTER;
+		int revealedMask = 0;
+
+		//Revealed letters must match in place
+		for (int p = 0; p < wordLength; p++)
+		{
+			char c = wordGuessedSoFar[p];
+			if (c == mysteryLetter)
+			{
+				continue;
+			}
+			int letter = Character.toLowerCase(c) - 'a';
+			if (letter < 0 || letter >= ALPHABET_SIZE)
+			{
+				//No dictionary word can match a letter outside the alphabet
+				return new long[numLongs];
+			}
+			revealedMask |= 1 << letter;
+			and(survivors, positionPostings[p * ALPHABET_SIZE + letter]);
+		}
+
+		//Guessed letters must not appear in the mystery positions
+		for (int bits = guessedLetterMask; bits != 0; bits &= bits - 1)
+		{
+			int letter = Integer.numberOfTrailingZeros(bits);
+			if ((revealedMask & (1 << letter)) == 0)
+			{
+				//A missed letter can not be anywhere in the word
+				andNot(survivors, containsPostings[letter]);
+				continue;
+			}
+			for (int p = 0; p < wordLength; p++)
+			{
+				if (wordGuessedSoFar[p] == mysteryLetter)
+				{
+					andNot(survivors, positionPostings[p * ALPHABET_SIZE + letter]);
+				}
+			}
+		}
+
+		//Remove the words that were already guessed wrong
+		for (String wrongWord : incorrectlyGuessedWords)
+		{
+			if (wrongWord.length() != wordLength)
+			{
+				continue;
+			}
+			for (int i = nextSetBit(survivors, 0); i >= 0; i = nextSetBit(survivors, i + 1))
+			{
+				if (matches(i, wrongWord))
+				{
+					survivors[i >>> 6] &= ~(1L << i);
+				}
+			}
+		}
+		return survivors;
+	}
+
+	/*
+	 * @param index of a word in the bucket
+	 * @param a word in any case
+	 * @return true if both are the same word
+	 */
+	public boolean matches(int index, String word)
+	{
+		if (word.length() != wordLength)
+		{
+			return false;
+		}
+		byte[] letters = words.getLetterCodes();
+		int offset = index * wordLength;
+		for (int p = 0; p < wordLength; p++)
+		{
+			if (letters[offset + p] != Character.toLowerCase(word.charAt(p)) - 'a')
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * @param bitset
+	 * @param index to start searching from
+	 * @return the index of the next set bit at or after the given index, -1 if there is none
+	 */
+	public static int nextSetBit(long[] bits, int fromIndex)
+	{
+		int j = fromIndex >>> 6;
+		if (j >= bits.length)
+		{
+			return -1;
+		}
+		long word = bits[j] & (-1L << fromIndex);
+		while (true)
+		{
+			if (word != 0)
+			{
+				return (j << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++j == bits.length)
+			{
+				return -1;
+			}
+			word = bits[j];
+		}
+	}
+
+	/*
+	 * @param bitset
+	 * @return the number of set bits
+	 */
+	public static int cardinality(long[] bits)
+	{
+		int count = 0;
+		for (long word : bits)
+		{
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	private static void and(long[] target, long[] mask)
+	{
+		for (int j = 0; j < target.length; j++)
+		{
+			target[j] &= mask[j];
+		}
+	}
+
+	private static void andNot(long[] target, long[] mask)
+	{
+		for (int j = 0; j < target.length; j++)
+		{
+			target[j] &= ~mask[j];
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * The words of a single length, stored wherever the dictionary was loaded from.
+ * Words are addressed by their index in dictionary order and are made of lower case
+ * letters 'a' to 'z'.
+ */
+public interface WordStore {
+
+	/*
+	 * @return length of every word in the store
+	 */
+	int getWordLength();
+
+	/*
+	 * @return number of words
+	 */
+	int size();
+
+	/*
+	 * @param index of the word
+	 * @param position in the word
+	 * @return the letter at the position
+	 */
+	char letterAt(int index, int position);
+
+	/*
+	 * @param index of the word
+	 * @return the word as a string
+	 */
+	String getWord(int index);
+}